@@ -0,0 +1,48 @@
+package benchmarks;
+
+// Standard imports
+import java.util.concurrent.TimeUnit;
+
+// Benchmark imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Custom imports
+import game.Board;
+import pieces.PiecePosition;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @State(Scope.Thread)
+    public static class BoardState {
+        public Board board;
+        public PiecePosition g1 = new PiecePosition(7, 6);
+        public PiecePosition f3 = new PiecePosition(5, 5);
+
+        @Setup(Level.Trial)
+        public void setup() {
+            board = new Board();
+        }
+    }
+
+    @Benchmark
+    public Board movePieceThereAndBack(BoardState state) {
+        // Ng1-f3 followed by Nf3-g1, so every invocation starts from the same position
+        state.board.movePiece(state.g1, state.f3);
+        state.board.movePiece(state.f3, state.g1);
+        return state.board;
+    }
+}
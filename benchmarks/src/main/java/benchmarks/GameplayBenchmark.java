@@ -0,0 +1,42 @@
+package benchmarks;
+
+// Standard imports
+import java.util.concurrent.TimeUnit;
+
+// Benchmark imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Custom imports
+import pieces.PiecePosition;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameplayBenchmark {
+    @Benchmark
+    public void legalMovesForAllPieces(PositionState state, Blackhole blackhole) {
+        // Highlight generation for every piece of the side to move
+        for (PiecePosition position : state.ownPieces) {
+            blackhole.consume(state.game.getLegalMovesForPiece(position));
+        }
+    }
+
+    @Benchmark
+    public boolean isInCheck(PositionState state) {
+        return state.game.isInCheck(state.sideToMove);
+    }
+
+    @Benchmark
+    public boolean isCheckmate(PositionState state) {
+        return state.game.isCheckmate(state.sideToMove);
+    }
+}
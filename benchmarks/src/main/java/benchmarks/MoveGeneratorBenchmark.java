@@ -0,0 +1,40 @@
+package benchmarks;
+
+// Standard imports
+import java.util.concurrent.TimeUnit;
+
+// Benchmark imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Custom imports
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGeneratorBenchmark {
+    // Reused between invocations, as the search does, so the GC profiler
+    // should report no allocation at all for these benchmarks
+    private final MoveList moves = new MoveList();
+
+    @Benchmark
+    public int pseudoLegalMoves(PositionState state) {
+        MoveGenerator.generateMoves(state.game.getBoard().getPosition(), moves);
+        return moves.size();
+    }
+
+    @Benchmark
+    public int legalMoves(PositionState state) {
+        MoveGenerator.generateLegalMoves(state.game.getBoard().getPosition(), moves);
+        return moves.size();
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+// Standard imports
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Benchmark imports
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Custom imports
+import bitboard.Position;
+import game.Board;
+import pieces.Piece;
+import pieces.PiecePosition;
+import pieces.PieceType;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceBenchmark {
+    @State(Scope.Thread)
+    public static class PieceState {
+        // One run per piece type, all on the same busy middlegame position
+        @Param({"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"})
+        public PieceType type;
+
+        public Piece[][] grid;
+        public long occupancy;
+        public Piece[] pieces;
+        public PiecePosition[] targets;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Board board = new Board(Position.fromFen(PositionState.fen("kiwipete")));
+            grid = board.getBoard();
+            occupancy = board.getPosition().getOccupancy();
+
+            // Every piece of the chosen type (both colours), tested against every square
+            List<Piece> found = new ArrayList<>();
+            targets = new PiecePosition[64];
+            for (int row = 0; row < 8; row++) {
+                for (int col = 0; col < 8; col++) {
+                    targets[row * 8 + col] = new PiecePosition(row, col);
+                    if (grid[row][col] != null && grid[row][col].getType() == type) {
+                        found.add(grid[row][col]);
+                    }
+                }
+            }
+            pieces = found.toArray(new Piece[0]);
+        }
+    }
+
+    @Benchmark
+    public void isValidMove(PieceState state, Blackhole blackhole) {
+        for (Piece piece : state.pieces) {
+            for (PiecePosition target : state.targets) {
+                blackhole.consume(piece.isValidMove(target, state.grid, state.occupancy));
+            }
+        }
+    }
+}
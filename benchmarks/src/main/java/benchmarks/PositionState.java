@@ -0,0 +1,69 @@
+package benchmarks;
+
+// Standard imports
+import java.util.ArrayList;
+import java.util.List;
+
+// Benchmark imports
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Custom imports
+import bitboard.Bitboards;
+import bitboard.Position;
+import game.Board;
+import game.Gameplay;
+import pieces.PieceColour;
+import pieces.PiecePosition;
+
+@State(Scope.Thread)
+public class PositionState {
+    // Fixed position set, selected by name so that results stay comparable between runs
+    @Param({"start", "kiwipete", "endgame", "promotions", "middlegame", "check", "mated"})
+    public String name;
+
+    public Gameplay game;
+    public PieceColour sideToMove;
+    public PiecePosition[] ownPieces;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = new Gameplay(new Board(Position.fromFen(fen(name))));
+        sideToMove = game.getCurrentPlayerColour();
+
+        // Squares holding the side to move's pieces, collected up front so
+        // that the benchmarks themselves only measure the engine calls
+        List<PiecePosition> squares = new ArrayList<>();
+        long own = game.getBoard().getPosition().getColourOccupancy(Bitboards.colourIndex(sideToMove));
+        while (own != 0) {
+            int square = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            squares.add(new PiecePosition(Bitboards.row(square), Bitboards.col(square)));
+        }
+        ownPieces = squares.toArray(new PiecePosition[0]);
+    }
+
+    public static String fen(String name) {
+        switch (name) {
+            case "start":
+                return "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+            case "kiwipete":
+                return "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+            case "endgame":
+                return "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+            case "promotions":
+                return "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+            case "middlegame":
+                return "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+            case "check":
+                return "rnbqkbnr/ppp2ppp/3p4/1B2p3/4P3/8/PPPP1PPP/RNBQK1NR b KQkq - 1 3";
+            case "mated":
+                return "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3";
+            default:
+                throw new IllegalArgumentException("Unknown benchmark position " + name);
+        }
+    }
+}
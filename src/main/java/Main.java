@@ -1,11 +1,48 @@
 // Standard imports
 import javax.swing.SwingUtilities;
+import java.util.Arrays;
 
 // Custom imports
 import game.ChessGUI;
+import tools.Analyse;
+import tools.Bench;
+import tools.Match;
+import tools.Perft;
+import tools.PgnAnalyse;
+import tools.Tablebases;
+import tools.Uci;
 
 public class Main {
     public static void main(String[] args) {
-    SwingUtilities.invokeLater(ChessGUI::new);
+        // Headless tools are selected by the first argument, otherwise open the GUI
+        if (args.length > 0 && args[0].equals("perft")) {
+            Perft.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("analyse")) {
+            Analyse.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("pgn")) {
+            PgnAnalyse.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("uci")) {
+            Uci.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("match")) {
+            Match.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("bench")) {
+            Bench.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("tbgen")) {
+            Tablebases.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        SwingUtilities.invokeLater(ChessGUI::new);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package bitboard;
+
+import static bitboard.Bitboards.*;
+import static bitboard.Magics.*;
+
+public final class Attacks {
+    // Leaper attacks do not depend on blockers, so they are worked out once
+    // per square here and every query is a single array read
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // For each pair of squares on a common rank, file or diagonal: the squares
+    // strictly between them, and the whole line through both (edge to edge)
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            long b = 1L << square;
+            KNIGHT_ATTACKS[square] = knightAttackMask(b);
+            KING_ATTACKS[square] = kingAttackMask(b);
+            PAWN_ATTACKS[WHITE][square] = pawnAttackMask(WHITE, b);
+            PAWN_ATTACKS[BLACK][square] = pawnAttackMask(BLACK, b);
+        }
+
+        // Built from the magic tables, so this must run after Magics is initialised
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b) {
+                    continue;
+                }
+                if ((rookAttacks(a, 0) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = rookAttacks(a, 1L << b) & rookAttacks(b, 1L << a);
+                    LINE[a][b] = (rookAttacks(a, 0) & rookAttacks(b, 0)) | (1L << a) | (1L << b);
+                } else if ((bishopAttacks(a, 0) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = bishopAttacks(a, 1L << b) & bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (bishopAttacks(a, 0) & bishopAttacks(b, 0)) | (1L << a) | (1L << b);
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long rookAttacks(int square, long occupancy) {
+        // Hash the blockers on the rook's rays into its slice of the table
+        int index = (int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[ROOK_OFFSETS[square] + index];
+    }
+
+    public static long bishopAttacks(int square, long occupancy) {
+        // Hash the blockers on the bishop's diagonals into its slice of the table
+        int index = (int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + index];
+    }
+
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    public static long pawnAttacks(int colour, int square) {
+        // Squares attacked by a pawn of the given colour standing on the square
+        return PAWN_ATTACKS[colour][square];
+    }
+
+    public static long between(int a, int b) {
+        // Empty unless the squares share a rank, file or diagonal
+        return BETWEEN[a][b];
+    }
+
+    public static long line(int a, int b) {
+        // Empty unless the squares share a rank, file or diagonal
+        return LINE[a][b];
+    }
+
+    private static long knightAttackMask(long b) {
+        // Shift the knight in all eight directions, masking off board wrap-around
+        long notA = ~FILE_A;
+        long notAB = ~(FILE_A | FILE_B);
+        long notH = ~FILE_H;
+        long notGH = ~(FILE_G | FILE_H);
+        return ((b << 17) & notA) | ((b << 15) & notH) | ((b << 10) & notAB) | ((b << 6) & notGH)
+             | ((b >>> 17) & notH) | ((b >>> 15) & notA) | ((b >>> 10) & notGH) | ((b >>> 6) & notAB);
+    }
+
+    private static long kingAttackMask(long b) {
+        // Spread the king one step sideways, then one step up and down
+        long row = b | ((b << 1) & ~FILE_A) | ((b >>> 1) & ~FILE_H);
+        return (row | (row << 8) | (row >>> 8)) & ~b;
+    }
+
+    private static long pawnAttackMask(int colour, long b) {
+        if (colour == WHITE) {
+            return ((b << 7) & ~FILE_H) | ((b << 9) & ~FILE_A);
+        }
+        return ((b >>> 9) & ~FILE_H) | ((b >>> 7) & ~FILE_A);
+    }
+}
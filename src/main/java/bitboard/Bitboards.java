@@ -0,0 +1,165 @@
+package bitboard;
+
+// Custom imports
+import pieces.Piece;
+import pieces.PieceColour;
+
+public final class Bitboards {
+    // Colour indices
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Piece type indices
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // Piece codes combine a colour and a type (colour * 6 + type)
+    public static final int WHITE_PAWN = 0;
+    public static final int WHITE_KNIGHT = 1;
+    public static final int WHITE_BISHOP = 2;
+    public static final int WHITE_ROOK = 3;
+    public static final int WHITE_QUEEN = 4;
+    public static final int WHITE_KING = 5;
+    public static final int BLACK_PAWN = 6;
+    public static final int BLACK_KNIGHT = 7;
+    public static final int BLACK_BISHOP = 8;
+    public static final int BLACK_ROOK = 9;
+    public static final int BLACK_QUEEN = 10;
+    public static final int BLACK_KING = 11;
+    public static final int EMPTY = -1;
+
+    // Sentinel for "no square", e.g. when there is no en passant target
+    public static final int NO_SQUARE = -1;
+
+    // Castling right flags
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // Square indices used by castling (a1 = 0, h8 = 63)
+    public static final int A1 = 0;
+    public static final int B1 = 1;
+    public static final int C1 = 2;
+    public static final int D1 = 3;
+    public static final int E1 = 4;
+    public static final int F1 = 5;
+    public static final int G1 = 6;
+    public static final int H1 = 7;
+    public static final int A8 = 56;
+    public static final int B8 = 57;
+    public static final int C8 = 58;
+    public static final int D8 = 59;
+    public static final int E8 = 60;
+    public static final int F8 = 61;
+    public static final int G8 = 62;
+    public static final int H8 = 63;
+
+    // File and rank masks
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_B = FILE_A << 1;
+    public static final long FILE_G = FILE_A << 6;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    // Castling rights that survive a move touching each square: moving a king
+    // or rook from (or capturing a rook on) its home square loses that right
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        java.util.Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[E1] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[H1] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[A1] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[E8] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[H8] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[A8] &= ~BLACK_QUEENSIDE;
+    }
+
+    private Bitboards() {
+    }
+
+    public static int square(int row, int col) {
+        // The GUI grid has row 0 at the top (black's back rank),
+        // whereas bitboards count from a1 upwards
+        return (7 - row) * 8 + col;
+    }
+
+    public static int row(int square) {
+        return 7 - (square >>> 3);
+    }
+
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    public static int rank(int square) {
+        return square >>> 3;
+    }
+
+    public static int file(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int pieceCode(int colour, int type) {
+        return colour * 6 + type;
+    }
+
+    public static int colourOf(int piece) {
+        return piece < 6 ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int piece) {
+        return piece < 6 ? piece : piece - 6;
+    }
+
+    public static int colourIndex(PieceColour colour) {
+        return colour == PieceColour.WHITE ? WHITE : BLACK;
+    }
+
+    public static PieceColour pieceColour(int colour) {
+        return colour == WHITE ? PieceColour.WHITE : PieceColour.BLACK;
+    }
+
+    public static int pieceCode(Piece piece) {
+        // Map an object piece onto its bitboard code
+        return pieceCode(colourIndex(piece.getColour()), piece.getType().ordinal());
+    }
+
+    public static long occupancy(Piece[][] board) {
+        // Build an occupancy bitboard from an object grid
+        long occupancy = 0;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                if (board[row][col] != null) {
+                    occupancy |= bit(square(row, col));
+                }
+            }
+        }
+        return occupancy;
+    }
+
+    public static int castlingMask(int square) {
+        return CASTLING_MASK[square];
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + file(square)) + (char) ('1' + rank(square));
+    }
+}
@@ -0,0 +1,254 @@
+package bitboard;
+
+import static bitboard.Bitboards.*;
+
+public final class Fen {
+    // Forsyth-Edwards Notation in a single pass over the characters, without
+    // splitting, regular expressions or boxing, so that bulk test suites and
+    // datasets can be read at millions of positions per minute. Parsing into
+    // an existing position also avoids allocating its undo stack every time.
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Piece code for each ASCII letter, -1 where it is not a piece
+    private static final int[] PIECE_CODES = new int[128];
+    private static final char[] PIECE_LETTERS = {'P', 'N', 'B', 'R', 'Q', 'K', 'p', 'n', 'b', 'r', 'q', 'k'};
+
+    static {
+        java.util.Arrays.fill(PIECE_CODES, -1);
+        for (int piece = 0; piece < PIECE_LETTERS.length; piece++) {
+            PIECE_CODES[PIECE_LETTERS[piece]] = piece;
+        }
+    }
+
+    private Fen() {
+    }
+
+    public static Position parse(CharSequence fen) {
+        Position position = new Position();
+        parse(fen, position);
+        return position;
+    }
+
+    public static void parse(CharSequence fen, Position position) {
+        // Replaces whatever the position held. The clocks may be left off, as
+        // many test suites do, in which case they default to 0 and 1
+        position.clear();
+        int length = fen.length();
+        int i = skipSpaces(fen, 0);
+
+        // Piece placement, from rank 8 down to rank 1
+        int rank = 7;
+        int file = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (file != 8 || rank == 0) {
+                    throw invalid(fen, "rank " + (rank + 1) + " does not have 8 squares");
+                }
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = c < 128 ? PIECE_CODES[c] : -1;
+                if (piece < 0) {
+                    throw invalid(fen, "unknown piece '" + c + "'");
+                }
+                if (file > 7) {
+                    throw invalid(fen, "rank " + (rank + 1) + " has more than 8 squares");
+                }
+                position.putPiece(piece, rank * 8 + file++);
+            }
+            if (file > 8) {
+                throw invalid(fen, "rank " + (rank + 1) + " has more than 8 squares");
+            }
+        }
+        if (rank != 0 || file != 8) {
+            throw invalid(fen, "placement does not cover 8 ranks");
+        }
+
+        // Side to move
+        i = skipSpaces(fen, i);
+        if (i < length) {
+            char side = fen.charAt(i++);
+            if (side != 'w' && side != 'b') {
+                throw invalid(fen, "side to move must be w or b");
+            }
+            position.setSideToMove(side == 'b' ? BLACK : WHITE);
+        }
+
+        // Castling rights, in any order, or '-'
+        i = skipSpaces(fen, i);
+        int rights = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            switch (fen.charAt(i)) {
+                case 'K' -> rights |= WHITE_KINGSIDE;
+                case 'Q' -> rights |= WHITE_QUEENSIDE;
+                case 'k' -> rights |= BLACK_KINGSIDE;
+                case 'q' -> rights |= BLACK_QUEENSIDE;
+                case '-' -> {
+                }
+                default -> throw invalid(fen, "unknown castling right '" + fen.charAt(i) + "'");
+            }
+        }
+        position.setCastlingRights(rights);
+
+        // En passant target square, or '-'
+        i = skipSpaces(fen, i);
+        if (i < length && fen.charAt(i) != '-') {
+            if (i + 1 >= length) {
+                throw invalid(fen, "incomplete en passant square");
+            }
+            int epFile = fen.charAt(i) - 'a';
+            int epRank = fen.charAt(i + 1) - '1';
+            if (epFile < 0 || epFile > 7 || (epRank != 2 && epRank != 5)) {
+                throw invalid(fen, "bad en passant square");
+            }
+            position.setEnPassantSquare(epRank * 8 + epFile);
+            i += 2;
+        } else if (i < length) {
+            i++;
+        }
+
+        // Halfmove clock and fullmove number
+        i = skipSpaces(fen, i);
+        if (i < length) {
+            int end = numberEnd(fen, i);
+            position.setHalfmoveClock(parseNumber(fen, i, end));
+            i = skipSpaces(fen, end);
+            if (i < length) {
+                end = numberEnd(fen, i);
+                position.setFullmoveNumber(Math.max(1, parseNumber(fen, i, end)));
+            }
+        }
+        validate(fen, position);
+    }
+
+    private static void validate(CharSequence fen, Position position) {
+        // Well-formed is not enough: move generation and search rely on each
+        // side having its king and on the side that just moved not being in
+        // check, so positions that could never arise are turned away here
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            if (Long.bitCount(position.getPieces(colour, KING)) != 1) {
+                throw invalid(fen, (colour == WHITE ? "white" : "black") + " must have exactly one king");
+            }
+        }
+        long pawns = position.getPieces(WHITE, PAWN) | position.getPieces(BLACK, PAWN);
+        if ((pawns & (RANK_1 | RANK_8)) != 0) {
+            throw invalid(fen, "pawn on the first or last rank");
+        }
+        if (position.isInCheck(position.getSideToMove() ^ 1)) {
+            throw invalid(fen, "the side not to move is in check");
+        }
+
+        // Castling moves the king and rook without looking, so a right whose
+        // king or rook is not at home is dropped, as a move from there would
+        int rights = position.getCastlingRights();
+        int[] homes = {E1, H1, A1, E8, H8, A8};
+        int[] types = {KING, ROOK, ROOK, KING, ROOK, ROOK};
+        for (int j = 0; j < homes.length; j++) {
+            if (position.getPiece(homes[j]) != pieceCode(j < 3 ? WHITE : BLACK, types[j])) {
+                rights &= castlingMask(homes[j]);
+            }
+        }
+        position.setCastlingRights(rights);
+
+        // An en passant capture takes the pawn in front of the target square,
+        // so that pawn must be the opponent's and have just come from behind
+        int target = position.getEnPassantSquare();
+        if (target != NO_SQUARE) {
+            int us = position.getSideToMove();
+            int forward = us == WHITE ? 8 : -8;
+            if (rank(target) != (us == WHITE ? 5 : 2)
+                    || position.getPiece(target - forward) != pieceCode(us ^ 1, PAWN)
+                    || position.getPiece(target) != EMPTY || position.getPiece(target + forward) != EMPTY) {
+                throw invalid(fen, "en passant square does not follow a double pawn push");
+            }
+        }
+    }
+
+    public static String format(Position position) {
+        StringBuilder text = new StringBuilder(90);
+        format(position, text);
+        return text.toString();
+    }
+
+    public static void format(Position position, StringBuilder text) {
+        // Appends the six FEN fields to the builder
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = position.getPiece(rank * 8 + file);
+                if (piece == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    text.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                text.append(PIECE_LETTERS[piece]);
+            }
+            if (empty > 0) {
+                text.append((char) ('0' + empty));
+            }
+            if (rank > 0) {
+                text.append('/');
+            }
+        }
+
+        text.append(position.getSideToMove() == WHITE ? " w " : " b ");
+        int rights = position.getCastlingRights();
+        if (rights == 0) {
+            text.append('-');
+        } else {
+            if ((rights & WHITE_KINGSIDE) != 0) {
+                text.append('K');
+            }
+            if ((rights & WHITE_QUEENSIDE) != 0) {
+                text.append('Q');
+            }
+            if ((rights & BLACK_KINGSIDE) != 0) {
+                text.append('k');
+            }
+            if ((rights & BLACK_QUEENSIDE) != 0) {
+                text.append('q');
+            }
+        }
+        text.append(' ');
+        int enPassant = position.getEnPassantSquare();
+        text.append(enPassant == NO_SQUARE ? "-" : squareName(enPassant));
+        text.append(' ').append(position.getHalfmoveClock());
+        text.append(' ').append(position.getFullmoveNumber());
+    }
+
+    private static int skipSpaces(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int numberEnd(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int parseNumber(CharSequence fen, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = fen.charAt(i);
+            if (c < '0' || c > '9' || value > 100_000) {
+                throw invalid(fen, "bad move clock");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN (" + reason + "): " + fen);
+    }
+}
@@ -0,0 +1,217 @@
+package bitboard;
+
+final class Magics {
+    // Ray directions as (rank, file) steps
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    // Magic multipliers per square, as printed by main() below. Searching for
+    // these from scratch takes a few hundred milliseconds, so they are
+    // generated once at build time and only verified at startup
+    static final long[] ROOK_MAGICS = {
+        0x0A80004000801220L, 0x10C0100040002000L, 0x0100102000410009L, 0x0B0021000C100008L,
+        0x4080080080040002L, 0x0200019004080200L, 0x0400080A10112684L, 0x20800A4D00062080L,
+        0x0800800080400024L, 0x0001402000401000L, 0x3000801000802001L, 0x0422001020420008L,
+        0x0092001008060020L, 0x0022000201049008L, 0x0A14001004010208L, 0x0020800455000880L,
+        0x0040048001458024L, 0x20400A8044802000L, 0x4220004010004802L, 0x010242000A001220L,
+        0x0200060010220066L, 0x0009010008040002L, 0x0701810100020004L, 0x0401020010811044L,
+        0x0080400880008421L, 0x40201000C0004061L, 0x1020200080100080L, 0x0400100480080081L,
+        0x0000080100050010L, 0x0800020080040080L, 0x0200110400428810L, 0x0030188200004504L,
+        0x0080002000400040L, 0x0000804000802004L, 0x0000120022004080L, 0x000A100101000A21L,
+        0x2005040081800800L, 0x420600C802005004L, 0x0400020001010004L, 0x1081084302001184L,
+        0x0080002000504000L, 0x4000200050044000L, 0x6030080024002000L, 0x0015002010010008L,
+        0x0014000408008080L, 0x080A008004008002L, 0x0520900108040002L, 0x48A5804100820004L,
+        0x0080204000800080L, 0x0400200040008080L, 0xA000801001200480L, 0x0820100021000900L,
+        0x2046002008108600L, 0x0000020080040080L, 0x4000102108820400L, 0x5008310080441200L,
+        0x0020850200244012L, 0x0081002602411082L, 0x000820000A401103L, 0x0811006048051001L,
+        0x000200A005100802L, 0x00010086480C0013L, 0xA00021108A301804L, 0x0002010040802402L
+    };
+    static final long[] BISHOP_MAGICS = {
+        0x40106000A1160020L, 0x0230106090808800L, 0x4010210041000800L, 0x02240400980C2000L,
+        0x1304030800402088L, 0x140A0F1008000002L, 0x0001043002088080L, 0x0431240044102800L,
+        0x0000120222042400L, 0x8442822202440100L, 0x8000480094208000L, 0x01100404308000A0L,
+        0x0040020210200100L, 0x0400250118420008L, 0x0800120210020850L, 0x0400290048440400L,
+        0x0004001004082820L, 0x0010000810010048L, 0x1014004208081300L, 0x0048402404028802L,
+        0x8882010420210400L, 0x0101802410040901L, 0x4084050441041100L, 0x800201008C840166L,
+        0x1004400004100410L, 0x0004240010A10800L, 0x8B00480004002400L, 0x8242002008008020L,
+        0x041084022C802000L, 0x0008020005888400L, 0x0011010400441000L, 0x0001110000242100L,
+        0x0808080400082121L, 0x0000880840216204L, 0x811C020440280040L, 0x0202200802010104L,
+        0x6040010100001040L, 0x0024008080080816L, 0x0530108501020900L, 0x1008010241011254L,
+        0x04081A0816002000L, 0x0000681208005000L, 0x0102042208012100L, 0x0A00004200810805L,
+        0x0800480104000041L, 0x2040100400405020L, 0x1288023802001040L, 0x0802041100202211L,
+        0x0602010120110040L, 0x0800220804040C03L, 0x0001510488900008L, 0x8006000084040040L,
+        0x0041021002020801L, 0x0801210401220000L, 0x4004200202220000L, 0x0008021820410010L,
+        0x0001008044200440L, 0x4101004400C41000L, 0x0100888504210410L, 0x0008120008840400L,
+        0x0000000040104100L, 0x0000010408100104L, 0x0000401084008088L, 0x0005240082020201L
+    };
+
+    // Relevant occupancy masks, index shifts and table offsets per square
+    static final long[] ROOK_MASKS = new long[64];
+    static final int[] ROOK_SHIFTS = new int[64];
+    static final int[] ROOK_OFFSETS = new int[64];
+    static final long[] BISHOP_MASKS = new long[64];
+    static final int[] BISHOP_SHIFTS = new int[64];
+    static final int[] BISHOP_OFFSETS = new int[64];
+
+    // Attack sets for every square, packed back to back ("fancy" magics)
+    static final long[] ROOK_TABLE;
+    static final long[] BISHOP_TABLE;
+
+    // Fixed per-rank seeds, so that the generator is deterministic
+    private static final long[] SEEDS = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+    private static long seed;
+
+    static {
+        ROOK_TABLE = buildTable(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_TABLE = buildTable(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+    }
+
+    private Magics() {
+    }
+
+    public static void main(String[] args) {
+        // Table generator: searches for fresh magics and prints them in the
+        // form used for ROOK_MAGICS and BISHOP_MAGICS above
+        printMagics("ROOK_MAGICS", ROOK_DIRECTIONS);
+        printMagics("BISHOP_MAGICS", BISHOP_DIRECTIONS);
+    }
+
+    private static void printMagics(String name, int[][] directions) {
+        StringBuilder output = new StringBuilder("    static final long[] " + name + " = {");
+        for (int square = 0; square < 64; square++) {
+            if ((square & 7) == 0) {
+                seed = SEEDS[square >>> 3];
+            }
+            long mask = relevantOccupancy(square, directions);
+            long[] scratch = new long[1 << Long.bitCount(mask)];
+            long magic = findMagic(square, directions, mask, 64 - Long.bitCount(mask), scratch, 0);
+
+            output.append(square % 4 == 0 ? "\n        " : " ");
+            output.append(String.format("0x%016XL", magic)).append(square < 63 ? "," : "");
+        }
+        System.out.println(output.append("\n    };"));
+    }
+
+    private static long[] buildTable(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        // Work out each square's relevant occupancy and where its attacks live in the shared table
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = relevantOccupancy(square, directions);
+            shifts[square] = 64 - Long.bitCount(masks[square]);
+            offsets[square] = size;
+            size += 1 << Long.bitCount(masks[square]);
+        }
+
+        // Fill in each square's slice of the table, searching for a new
+        // magic only if the stored one turns out not to be collision-free
+        long[] table = new long[size];
+        for (int square = 0; square < 64; square++) {
+            if ((square & 7) == 0) {
+                seed = SEEDS[square >>> 3];
+            }
+            long[] occupancies = subsets(masks[square]);
+            long[] attacks = referenceAttacks(square, occupancies, directions);
+            if (!tryMagic(magics[square], occupancies, attacks, shifts[square], table, offsets[square], new int[occupancies.length], 1)) {
+                magics[square] = findMagic(square, directions, masks[square], shifts[square], table, offsets[square]);
+            }
+        }
+        return table;
+    }
+
+    private static long findMagic(int square, int[][] directions, long mask, int shift, long[] table, int offset) {
+        long[] occupancies = subsets(mask);
+        long[] attacks = referenceAttacks(square, occupancies, directions);
+
+        // Try sparse random candidates until one maps every subset without a destructive collision
+        int[] epoch = new int[occupancies.length];
+        for (int attempt = 1; ; attempt++) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) >>> 56) < 6) {
+                // Not enough high bits set, reject early
+                continue;
+            }
+            if (tryMagic(magic, occupancies, attacks, shift, table, offset, epoch, attempt)) {
+                return magic;
+            }
+        }
+    }
+
+    private static boolean tryMagic(long magic, long[] occupancies, long[] attacks, int shift,
+                                    long[] table, int offset, int[] epoch, int attempt) {
+        // Hash every occupancy subset, writing its attacks into the table as we go
+        for (int i = 0; i < occupancies.length; i++) {
+            int index = (int) ((occupancies[i] * magic) >>> shift);
+            if (epoch[index] != attempt) {
+                // Unused slot in this attempt
+                epoch[index] = attempt;
+                table[offset + index] = attacks[i];
+            } else if (table[offset + index] != attacks[i]) {
+                // Two occupancies with different attacks share a slot
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] subsets(long mask) {
+        // Enumerate every subset of the mask (carry-rippler)
+        long[] occupancies = new long[1 << Long.bitCount(mask)];
+        long subset = 0;
+        for (int i = 0; i < occupancies.length; i++) {
+            occupancies[i] = subset;
+            subset = (subset - mask) & mask;
+        }
+        return occupancies;
+    }
+
+    private static long[] referenceAttacks(int square, long[] occupancies, int[][] directions) {
+        long[] attacks = new long[occupancies.length];
+        for (int i = 0; i < occupancies.length; i++) {
+            attacks[i] = slidingAttacks(square, occupancies[i], directions);
+        }
+        return attacks;
+    }
+
+    private static long relevantOccupancy(int square, int[][] directions) {
+        // Squares along each ray whose occupancy matters, i.e. excluding the board edge
+        long mask = 0;
+        for (int[] d : directions) {
+            int rank = (square >>> 3) + d[0];
+            int file = (square & 7) + d[1];
+            while (rank + d[0] >= 0 && rank + d[0] < 8 && file + d[1] >= 0 && file + d[1] < 8) {
+                mask |= 1L << (rank * 8 + file);
+                rank += d[0];
+                file += d[1];
+            }
+        }
+        return mask;
+    }
+
+    static long slidingAttacks(int square, long occupancy, int[][] directions) {
+        // Reference ray walk, only used while building the tables
+        long attacks = 0;
+        for (int[] d : directions) {
+            int rank = (square >>> 3) + d[0];
+            int file = (square & 7) + d[1];
+            while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupancy & bit) != 0) {
+                    // Blocker reached, it can be captured but not passed
+                    break;
+                }
+                rank += d[0];
+                file += d[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static long nextRandom() {
+        // xorshift64* generator
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
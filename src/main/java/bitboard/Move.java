@@ -0,0 +1,64 @@
+package bitboard;
+
+public final class Move {
+    // Moves are plain ints so that generating, storing and comparing them never
+    // allocates: bits 0-5 hold the from square, bits 6-11 the to square and
+    // bits 12-15 the flags below. The same 16 bits go into the transposition table.
+    public static final int NONE = 0;
+
+    // Move flags: the low two bits of a promotion select the piece (knight..queen)
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+    public static final int PROMOTION_CAPTURE = 12;
+
+    private Move() {
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        int flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    public static int promotionType(int move) {
+        // Knight, bishop, rook or queen
+        return Bitboards.KNIGHT + (flags(move) & 3);
+    }
+
+    public static String toString(int move) {
+        // Long algebraic notation, e.g. e2e4 or e7e8q
+        String text = Bitboards.squareName(from(move)) + Bitboards.squareName(to(move));
+        if (isPromotion(move)) {
+            text += "nbrq".charAt(flags(move) & 3);
+        }
+        return text;
+    }
+}
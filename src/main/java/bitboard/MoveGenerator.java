@@ -0,0 +1,301 @@
+package bitboard;
+
+import static bitboard.Bitboards.*;
+
+public final class MoveGenerator {
+    // Which legal moves to generate: captures covers every capture (en passant
+    // included) and every promotion, quiets everything else (castling included)
+    public static final int ALL = 0;
+    public static final int CAPTURES = 1;
+    public static final int QUIETS = 2;
+
+    private MoveGenerator() {
+    }
+
+    public static MoveList generateLegalMoves(Position position) {
+        // Convenience for callers outside the search, which can afford a fresh list
+        MoveList moves = new MoveList();
+        generateLegalMoves(position, moves);
+        return moves;
+    }
+
+    public static void generateLegalMoves(Position position, MoveList moves) {
+        generateLegalMoves(position, moves, ALL);
+    }
+
+    public static void generateLegalMoves(Position position, MoveList moves, int type) {
+        // Generate only legal moves in a single pass. The checking pieces and
+        // our pinned pieces are worked out once up front; from them every
+        // move except the rare en passant capture is known to be legal as it
+        // is generated, with no need to play it and look for check
+        moves.clear();
+        int us = position.getSideToMove();
+        int them = us ^ 1;
+        long own = position.getColourOccupancy(us);
+        long enemy = position.getColourOccupancy(them);
+        long occupancy = position.getOccupancy();
+        int king = position.getKingSquare(us);
+        long typeMask = type == CAPTURES ? enemy : type == QUIETS ? ~occupancy : ~0L;
+
+        // King moves: the destination may not be attacked, looking through the
+        // king's current square so it cannot hide behind itself from a slider
+        long kingless = occupancy & ~(1L << king);
+        long kingTargets = Attacks.kingAttacks(king) & ~own & typeMask;
+        while (kingTargets != 0) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if ((position.attackersTo(to, kingless) & enemy) == 0) {
+                moves.add(Move.encode(king, to, (enemy & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET));
+            }
+        }
+
+        // In double check only the king can move
+        long checkers = position.attackersTo(king, occupancy) & enemy;
+        if (Long.bitCount(checkers) > 1) {
+            return;
+        }
+
+        // Out of check any target will do; in check a move must capture
+        // the checker or step between it and the king
+        long targetMask = ~own;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            targetMask &= checkers | Attacks.between(king, checker);
+        }
+        long pinned = pinnedPieces(position, us, king, own, occupancy);
+
+        // Pawns: the free ones set-wise, pinned ones one at a time along their pin line
+        long pawns = position.getPieces(us, PAWN);
+        generatePawnMoves(pawns & ~pinned, us, enemy, occupancy, targetMask, type, moves);
+        if (checkers == 0) {
+            // A pinned piece can never resolve a check, so this is only needed out of check
+            long pinnedPawns = pawns & pinned;
+            while (pinnedPawns != 0) {
+                int from = Long.numberOfTrailingZeros(pinnedPawns);
+                pinnedPawns &= pinnedPawns - 1;
+                generatePawnMoves(1L << from, us, enemy, occupancy, targetMask & Attacks.line(king, from), type, moves);
+            }
+        }
+        if (type != QUIETS) {
+            generateLegalEnPassant(position, us, pawns, moves);
+        }
+
+        // Pieces other than pawns capture exactly where they move, so the
+        // type of move wanted is just a restriction on the target squares
+        targetMask &= typeMask;
+
+        // Knights can never move along a pin line, so pinned knights are simply skipped
+        long knights = position.getPieces(us, KNIGHT) & ~pinned;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(from, Attacks.knightAttacks(from) & targetMask, enemy, moves);
+        }
+
+        // Sliders, with pinned ones kept on the line through their king
+        long bishops = position.getPieces(us, BISHOP) | position.getPieces(us, QUEEN);
+        while (bishops != 0) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            bishops &= bishops - 1;
+            long targets = Attacks.bishopAttacks(from, occupancy) & targetMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(king, from);
+            }
+            addMoves(from, targets, enemy, moves);
+        }
+        long rooks = position.getPieces(us, ROOK) | position.getPieces(us, QUEEN);
+        while (rooks != 0) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            rooks &= rooks - 1;
+            long targets = Attacks.rookAttacks(from, occupancy) & targetMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(king, from);
+            }
+            addMoves(from, targets, enemy, moves);
+        }
+
+        // Castling checks its own squares for attacks, but never out of check
+        if (checkers == 0 && type != CAPTURES) {
+            generateCastling(position, us, occupancy, moves);
+        }
+    }
+
+    private static long pinnedPieces(Position position, int us, int king, long own, long occupancy) {
+        // Enemy sliders lined up with our king behind exactly one of our pieces pin that piece
+        int them = us ^ 1;
+        long queens = position.getPieces(them, QUEEN);
+        long snipers = (Attacks.rookAttacks(king, 0) & (position.getPieces(them, ROOK) | queens))
+                     | (Attacks.bishopAttacks(king, 0) & (position.getPieces(them, BISHOP) | queens));
+        long pinned = 0;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(king, sniper) & occupancy;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & own;
+            }
+        }
+        return pinned;
+    }
+
+    private static void generateLegalEnPassant(Position position, int us, long pawns, MoveList moves) {
+        // En passant removes two pieces from one rank, which can expose the king
+        // in ways the pin mask does not cover, so each capture is tried out
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant == NO_SQUARE) {
+            return;
+        }
+        long capturers = Attacks.pawnAttacks(us ^ 1, enPassant) & pawns;
+        while (capturers != 0) {
+            int from = Long.numberOfTrailingZeros(capturers);
+            capturers &= capturers - 1;
+            int move = Move.encode(from, enPassant, Move.EN_PASSANT);
+            position.makeMove(move);
+            if (!position.isInCheck(us)) {
+                moves.add(move);
+            }
+            position.unmakeMove(move);
+        }
+    }
+
+    public static void generateMoves(Position position, MoveList moves) {
+        // Generate all pseudo-legal moves for the side to move, replacing
+        // whatever the buffer held before; some may leave the king in check
+        moves.clear();
+        int us = position.getSideToMove();
+        long own = position.getColourOccupancy(us);
+        long enemy = position.getColourOccupancy(us ^ 1);
+        long occupancy = position.getOccupancy();
+
+        long pawns = position.getPieces(us, PAWN);
+        generatePawnMoves(pawns, us, enemy, occupancy, ~own, ALL, moves);
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant != NO_SQUARE) {
+            long capturers = Attacks.pawnAttacks(us ^ 1, enPassant) & pawns;
+            while (capturers != 0) {
+                int from = Long.numberOfTrailingZeros(capturers);
+                capturers &= capturers - 1;
+                moves.add(Move.encode(from, enPassant, Move.EN_PASSANT));
+            }
+        }
+
+        // Knights and king step to fixed squares
+        long knights = position.getPieces(us, KNIGHT);
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            addMoves(from, Attacks.knightAttacks(from) & ~own, enemy, moves);
+        }
+        int king = position.getKingSquare(us);
+        addMoves(king, Attacks.kingAttacks(king) & ~own, enemy, moves);
+
+        // Sliders look their targets up in the magic tables
+        long bishops = position.getPieces(us, BISHOP) | position.getPieces(us, QUEEN);
+        while (bishops != 0) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            bishops &= bishops - 1;
+            addMoves(from, Attacks.bishopAttacks(from, occupancy) & ~own, enemy, moves);
+        }
+        long rooks = position.getPieces(us, ROOK) | position.getPieces(us, QUEEN);
+        while (rooks != 0) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            rooks &= rooks - 1;
+            addMoves(from, Attacks.rookAttacks(from, occupancy) & ~own, enemy, moves);
+        }
+
+        generateCastling(position, us, occupancy, moves);
+    }
+
+    private static void addMoves(int from, long targets, long enemy, MoveList moves) {
+        // One move per target square, flagged as a capture when an enemy piece is there
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(Move.encode(from, to, (enemy & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET));
+        }
+    }
+
+    private static void generatePawnMoves(long pawns, int us, long enemy, long occupancy, long targetMask, int type, MoveList moves) {
+        // Pawns are handled set-wise: shift all of them forwards at once, then
+        // keep the targets allowed by the mask (en passant is handled separately).
+        // Pushes to the last rank are promotions, so they count as captures here
+        long empty = ~occupancy;
+        int forward = us == WHITE ? 8 : -8;
+        long promotionRank = us == WHITE ? RANK_8 : RANK_1;
+
+        // Single pushes, and double pushes from pawns that landed on their third rank
+        long singles = us == WHITE ? (pawns << 8) & empty : (pawns >>> 8) & empty;
+        long doubles = us == WHITE ? ((singles & RANK_3) << 8) & empty : ((singles & RANK_6) >>> 8) & empty;
+        singles &= targetMask;
+        doubles &= targetMask;
+        if (type != CAPTURES) {
+            addPawnMoves(singles & ~promotionRank, forward, Move.QUIET, moves);
+            addPawnMoves(doubles, 2 * forward, Move.DOUBLE_PUSH, moves);
+        }
+        if (type == QUIETS) {
+            return;
+        }
+        addPromotions(singles & promotionRank, forward, Move.PROMOTION, moves);
+
+        // Diagonal captures towards each side, masking off pawns that would wrap around the board
+        long captures = enemy & targetMask;
+        long left = us == WHITE ? (pawns << 7) & ~FILE_H & captures : (pawns >>> 9) & ~FILE_H & captures;
+        long right = us == WHITE ? (pawns << 9) & ~FILE_A & captures : (pawns >>> 7) & ~FILE_A & captures;
+        int leftOffset = us == WHITE ? 7 : -9;
+        int rightOffset = us == WHITE ? 9 : -7;
+        addPawnMoves(left & ~promotionRank, leftOffset, Move.CAPTURE, moves);
+        addPawnMoves(right & ~promotionRank, rightOffset, Move.CAPTURE, moves);
+        addPromotions(left & promotionRank, leftOffset, Move.PROMOTION_CAPTURE, moves);
+        addPromotions(right & promotionRank, rightOffset, Move.PROMOTION_CAPTURE, moves);
+    }
+
+    private static void addPawnMoves(long targets, int offset, int flags, MoveList moves) {
+        // Recover each pawn's origin square from the shift that produced its target
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(Move.encode(to - offset, to, flags));
+        }
+    }
+
+    private static void addPromotions(long targets, int offset, int flags, MoveList moves) {
+        // One move for each piece the pawn can become, queen first
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            for (int piece = 3; piece >= 0; piece--) {
+                moves.add(Move.encode(to - offset, to, flags | piece));
+            }
+        }
+    }
+
+    private static void generateCastling(Position position, int us, long occupancy, MoveList moves) {
+        // The squares between king and rook must be empty, and the king may not
+        // castle out of, through or into check
+        int rights = position.getCastlingRights();
+        int them = us ^ 1;
+        if (us == WHITE) {
+            if ((rights & WHITE_KINGSIDE) != 0 && (occupancy & (bit(F1) | bit(G1))) == 0
+                && !position.isSquareAttacked(E1, them) && !position.isSquareAttacked(F1, them)
+                && !position.isSquareAttacked(G1, them)) {
+                moves.add(Move.encode(E1, G1, Move.KING_CASTLE));
+            }
+            if ((rights & WHITE_QUEENSIDE) != 0 && (occupancy & (bit(B1) | bit(C1) | bit(D1))) == 0
+                && !position.isSquareAttacked(E1, them) && !position.isSquareAttacked(D1, them)
+                && !position.isSquareAttacked(C1, them)) {
+                moves.add(Move.encode(E1, C1, Move.QUEEN_CASTLE));
+            }
+        } else {
+            if ((rights & BLACK_KINGSIDE) != 0 && (occupancy & (bit(F8) | bit(G8))) == 0
+                && !position.isSquareAttacked(E8, them) && !position.isSquareAttacked(F8, them)
+                && !position.isSquareAttacked(G8, them)) {
+                moves.add(Move.encode(E8, G8, Move.KING_CASTLE));
+            }
+            if ((rights & BLACK_QUEENSIDE) != 0 && (occupancy & (bit(B8) | bit(C8) | bit(D8))) == 0
+                && !position.isSquareAttacked(E8, them) && !position.isSquareAttacked(D8, them)
+                && !position.isSquareAttacked(C8, them)) {
+                moves.add(Move.encode(E8, C8, Move.QUEEN_CASTLE));
+            }
+        }
+    }
+}
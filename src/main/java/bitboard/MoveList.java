@@ -0,0 +1,68 @@
+package bitboard;
+
+public final class MoveList {
+    // No legal chess position has more than 218 moves, so a fixed buffer
+    // of this size never overflows and never needs to grow
+    public static final int CAPACITY = 256;
+
+    private final int[] moves = new int[CAPACITY];
+    private int size;
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        // Reuse the buffer for the next position
+        size = 0;
+    }
+
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void moveToFront(int move) {
+        // Shift the given move (if present) to index 0, keeping the others in order
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            text.append(i == 0 ? "" : " ").append(Move.toString(moves[i]));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,448 @@
+package bitboard;
+
+// Standard imports
+import java.util.Arrays;
+
+import static bitboard.Bitboards.*;
+
+public class Position {
+    // One bitboard for each of the twelve piece codes
+    private final long[] pieces = new long[12];
+
+    // Aggregated occupancy, kept in step with the piece sets
+    private final long[] colourOccupancy = new long[2];
+    private long occupancy;
+
+    // Piece code on each square, so "what is on square X" is a single array read
+    private final int[] mailbox = new int[64];
+
+    // Each side's king square, tracked as kings are placed and lifted so that
+    // check detection can start from it without scanning a bitboard
+    private final int[] kingSquares = {NO_SQUARE, NO_SQUARE};
+
+    // Game state that is not captured by the piece placement
+    private int sideToMove = WHITE;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+
+    // Zobrist hash of everything above, updated incrementally on every change
+    private long key = Zobrist.CASTLING[0];
+
+    // Hash of the pawns only, which changes far less often than the full key
+    // and lets pawn structure scores be cached between many positions
+    private long pawnKey = Zobrist.NO_PAWNS;
+
+    // Running evaluation sums, also updated as pieces are placed and lifted:
+    // material plus piece-square scores for the middlegame and the endgame
+    // (white's point of view) and the game phase from the pieces left
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+
+    // Undo stack: what each move made so far destroyed, held in parallel
+    // primitive arrays so that making and unmaking moves never allocates
+    private static final int INITIAL_UNDO_CAPACITY = 1024;
+    private int[] undoCaptured = new int[INITIAL_UNDO_CAPACITY];
+    private int[] undoCastlingRights = new int[INITIAL_UNDO_CAPACITY];
+    private int[] undoEnPassantSquare = new int[INITIAL_UNDO_CAPACITY];
+    private int[] undoHalfmoveClock = new int[INITIAL_UNDO_CAPACITY];
+    private long[] undoKey = new long[INITIAL_UNDO_CAPACITY];
+    private int undoCount;
+
+    public Position() {
+        Arrays.fill(mailbox, EMPTY);
+    }
+
+    public Position(Position other) {
+        // Copy constructor
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colourOccupancy, 0, colourOccupancy, 0, colourOccupancy.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        System.arraycopy(other.kingSquares, 0, kingSquares, 0, kingSquares.length);
+        this.occupancy = other.occupancy;
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.key = other.key;
+        this.pawnKey = other.pawnKey;
+        this.middlegameScore = other.middlegameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+
+        // The history comes along too, so repetitions are still recognised
+        int capacity = Math.max(INITIAL_UNDO_CAPACITY, other.undoCount * 2);
+        this.undoCaptured = Arrays.copyOf(other.undoCaptured, capacity);
+        this.undoCastlingRights = Arrays.copyOf(other.undoCastlingRights, capacity);
+        this.undoEnPassantSquare = Arrays.copyOf(other.undoEnPassantSquare, capacity);
+        this.undoHalfmoveClock = Arrays.copyOf(other.undoHalfmoveClock, capacity);
+        this.undoKey = Arrays.copyOf(other.undoKey, capacity);
+        this.undoCount = other.undoCount;
+    }
+
+    public void clear() {
+        // Remove every piece and reset the game state
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(colourOccupancy, 0L);
+        Arrays.fill(mailbox, EMPTY);
+        Arrays.fill(kingSquares, NO_SQUARE);
+        occupancy = 0L;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        key = Zobrist.CASTLING[0];
+        pawnKey = Zobrist.NO_PAWNS;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        undoCount = 0;
+    }
+
+    public void putPiece(int piece, int square) {
+        // Place a piece on an empty square
+        long mask = 1L << square;
+        pieces[piece] |= mask;
+        colourOccupancy[colourOf(piece)] |= mask;
+        occupancy |= mask;
+        mailbox[square] = piece;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+        middlegameScore += PieceSquareTables.MIDDLEGAME[piece][square];
+        endgameScore += PieceSquareTables.ENDGAME[piece][square];
+        phase += PieceSquareTables.PHASE_WEIGHTS[typeOf(piece)];
+        if (typeOf(piece) == PAWN) {
+            pawnKey ^= Zobrist.PIECE_SQUARE[piece][square];
+        } else if (typeOf(piece) == KING) {
+            kingSquares[colourOf(piece)] = square;
+        }
+    }
+
+    public int removePiece(int square) {
+        // Lift whatever is on the square, returning its code (or EMPTY)
+        int piece = mailbox[square];
+        if (piece != EMPTY) {
+            long mask = ~(1L << square);
+            pieces[piece] &= mask;
+            colourOccupancy[colourOf(piece)] &= mask;
+            occupancy &= mask;
+            mailbox[square] = EMPTY;
+            key ^= Zobrist.PIECE_SQUARE[piece][square];
+            middlegameScore -= PieceSquareTables.MIDDLEGAME[piece][square];
+            endgameScore -= PieceSquareTables.ENDGAME[piece][square];
+            phase -= PieceSquareTables.PHASE_WEIGHTS[typeOf(piece)];
+            if (typeOf(piece) == PAWN) {
+                pawnKey ^= Zobrist.PIECE_SQUARE[piece][square];
+            } else if (typeOf(piece) == KING) {
+                kingSquares[colourOf(piece)] = NO_SQUARE;
+            }
+        }
+        return piece;
+    }
+
+    public int createMove(int from, int to) {
+        // Work out the flags for a piece going from one square to another,
+        // promoting to a queen when a pawn reaches the last rank
+        int piece = mailbox[from];
+        boolean capture = mailbox[to] != EMPTY;
+        if (typeOf(piece) == PAWN) {
+            if (rank(to) == 0 || rank(to) == 7) {
+                return Move.encode(from, to, (capture ? Move.PROMOTION_CAPTURE : Move.PROMOTION) | (QUEEN - KNIGHT));
+            }
+            if (to == enPassantSquare && file(from) != file(to)) {
+                return Move.encode(from, to, Move.EN_PASSANT);
+            }
+            if (Math.abs(to - from) == 16) {
+                return Move.encode(from, to, Move.DOUBLE_PUSH);
+            }
+        } else if (typeOf(piece) == KING && Math.abs(to - from) == 2) {
+            return Move.encode(from, to, to > from ? Move.KING_CASTLE : Move.QUEEN_CASTLE);
+        }
+        return Move.encode(from, to, capture ? Move.CAPTURE : Move.QUIET);
+    }
+
+    public void makeMove(int move) {
+        // Play a fully specified move, including castling, en passant and promotion
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int piece = mailbox[from];
+        long previousKey = key;
+
+        // Remove the captured piece, which sits behind the target square for en passant
+        int captured;
+        if (flags == Move.EN_PASSANT) {
+            captured = removePiece(sideToMove == WHITE ? to - 8 : to + 8);
+        } else {
+            captured = removePiece(to);
+        }
+
+        // Save what the move destroys so that unmakeMove can restore it
+        pushUndo(captured, previousKey);
+
+        // Move the piece, swapping in the new piece for promotions
+        removePiece(from);
+        putPiece(Move.isPromotion(move) ? pieceCode(sideToMove, Move.promotionType(move)) : piece, to);
+
+        // Castling also moves the rook across the king
+        if (flags == Move.KING_CASTLE) {
+            putPiece(removePiece(to + 1), to - 1);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            putPiece(removePiece(to - 2), to + 1);
+        }
+
+        // Update castling rights, en passant target, move clocks and turn
+        setCastlingRights(castlingRights & castlingMask(from) & castlingMask(to));
+        setEnPassantSquare(flags == Move.DOUBLE_PUSH ? (from + to) / 2 : NO_SQUARE);
+        halfmoveClock = (typeOf(piece) == PAWN || captured != EMPTY) ? 0 : halfmoveClock + 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber++;
+        }
+        setSideToMove(sideToMove ^ 1);
+    }
+
+    public void unmakeMove(int move) {
+        // Take back the last move made, which must be the given one
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        undoCount--;
+
+        sideToMove ^= 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber--;
+        }
+
+        // Put the rook back for castling
+        if (flags == Move.KING_CASTLE) {
+            putPiece(removePiece(to - 1), to + 1);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            putPiece(removePiece(to + 1), to - 2);
+        }
+
+        // Move the piece back, turning a promoted piece back into a pawn
+        int piece = removePiece(to);
+        putPiece(Move.isPromotion(move) ? pieceCode(sideToMove, PAWN) : piece, from);
+
+        // Restore any captured piece
+        int captured = undoCaptured[undoCount];
+        if (captured != EMPTY) {
+            putPiece(captured, flags == Move.EN_PASSANT ? (sideToMove == WHITE ? to - 8 : to + 8) : to);
+        }
+
+        // Restore the state the move overwrote; the saved key also undoes
+        // the hash changes made by the piece moves above
+        castlingRights = undoCastlingRights[undoCount];
+        enPassantSquare = undoEnPassantSquare[undoCount];
+        halfmoveClock = undoHalfmoveClock[undoCount];
+        key = undoKey[undoCount];
+    }
+
+    public void makeNullMove() {
+        // Pass the turn without moving, for null-move pruning in the search.
+        // It goes on the undo stack like any move, so repetitions still work
+        pushUndo(EMPTY, key);
+        setEnPassantSquare(NO_SQUARE);
+        halfmoveClock++;
+        setSideToMove(sideToMove ^ 1);
+    }
+
+    public void unmakeNullMove() {
+        undoCount--;
+        sideToMove ^= 1;
+        enPassantSquare = undoEnPassantSquare[undoCount];
+        halfmoveClock = undoHalfmoveClock[undoCount];
+        key = undoKey[undoCount];
+    }
+
+    public boolean hasNonPawnMaterial(int colour) {
+        // Anything besides pawns and the king; without it, passing is often the
+        // best move (zugzwang) and null-move pruning cannot be trusted
+        return (colourOccupancy[colour] & ~pieces[pieceCode(colour, PAWN)] & ~pieces[pieceCode(colour, KING)]) != 0;
+    }
+
+    private void pushUndo(int captured, long previousKey) {
+        // Grow the stack on the rare occasion a game outlasts it
+        if (undoCount == undoKey.length) {
+            int capacity = undoCount * 2;
+            undoCaptured = Arrays.copyOf(undoCaptured, capacity);
+            undoCastlingRights = Arrays.copyOf(undoCastlingRights, capacity);
+            undoEnPassantSquare = Arrays.copyOf(undoEnPassantSquare, capacity);
+            undoHalfmoveClock = Arrays.copyOf(undoHalfmoveClock, capacity);
+            undoKey = Arrays.copyOf(undoKey, capacity);
+        }
+        undoCaptured[undoCount] = captured;
+        undoCastlingRights[undoCount] = castlingRights;
+        undoEnPassantSquare[undoCount] = enPassantSquare;
+        undoHalfmoveClock[undoCount] = halfmoveClock;
+        undoKey[undoCount] = previousKey;
+        undoCount++;
+    }
+
+    public boolean isRepetition() {
+        // Look back through earlier positions with the same side to move, as far
+        // as the last capture or pawn move (nothing before that can recur)
+        int limit = Math.max(0, undoCount - halfmoveClock);
+        for (int i = undoCount - 2; i >= limit; i -= 2) {
+            if (undoKey[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isThreefoldRepetition() {
+        // The rule of the game rather than the search's shortcut: the current
+        // position must have occurred twice before
+        int limit = Math.max(0, undoCount - halfmoveClock);
+        int occurrences = 1;
+        for (int i = undoCount - 2; i >= limit; i -= 2) {
+            if (undoKey[i] == key && ++occurrences == 3) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSquareAttacked(int square, int byColour) {
+        // Look outwards from the square with each piece's attack pattern;
+        // any enemy piece of that type found there attacks the square
+        long queens = pieces[pieceCode(byColour, QUEEN)];
+        return (Attacks.pawnAttacks(byColour ^ 1, square) & pieces[pieceCode(byColour, PAWN)]) != 0
+            || (Attacks.knightAttacks(square) & pieces[pieceCode(byColour, KNIGHT)]) != 0
+            || (Attacks.kingAttacks(square) & pieces[pieceCode(byColour, KING)]) != 0
+            || (Attacks.bishopAttacks(square, occupancy) & (pieces[pieceCode(byColour, BISHOP)] | queens)) != 0
+            || (Attacks.rookAttacks(square, occupancy) & (pieces[pieceCode(byColour, ROOK)] | queens)) != 0;
+    }
+
+    public long attackersTo(int square, long occupancy) {
+        // Every piece of either colour attacking the square, with sliders seeing
+        // through the given occupancy (which need not be the real one)
+        long queens = pieces[WHITE_QUEEN] | pieces[BLACK_QUEEN];
+        return (Attacks.pawnAttacks(BLACK, square) & pieces[WHITE_PAWN])
+             | (Attacks.pawnAttacks(WHITE, square) & pieces[BLACK_PAWN])
+             | (Attacks.knightAttacks(square) & (pieces[WHITE_KNIGHT] | pieces[BLACK_KNIGHT]))
+             | (Attacks.kingAttacks(square) & (pieces[WHITE_KING] | pieces[BLACK_KING]))
+             | (Attacks.bishopAttacks(square, occupancy) & (pieces[WHITE_BISHOP] | pieces[BLACK_BISHOP] | queens))
+             | (Attacks.rookAttacks(square, occupancy) & (pieces[WHITE_ROOK] | pieces[BLACK_ROOK] | queens));
+    }
+
+    public boolean isInCheck(int colour) {
+        // A side without a king (possible while a board is being set up) is never in check
+        int king = kingSquares[colour];
+        return king != NO_SQUARE && isSquareAttacked(king, colour ^ 1);
+    }
+
+    public static Position fromFen(String fen) {
+        // Build a position from Forsyth-Edwards Notation
+        return Fen.parse(fen);
+    }
+
+    public String toFen() {
+        return Fen.format(this);
+    }
+
+    public long getPieces(int piece) {
+        return pieces[piece];
+    }
+
+    public long getPieces(int colour, int type) {
+        return pieces[pieceCode(colour, type)];
+    }
+
+    public long getColourOccupancy(int colour) {
+        return colourOccupancy[colour];
+    }
+
+    public long getOccupancy() {
+        return occupancy;
+    }
+
+    public int getPiece(int square) {
+        return mailbox[square];
+    }
+
+    public int getKingSquare(int colour) {
+        // NO_SQUARE if that side has no king on the board
+        return kingSquares[colour];
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if (sideToMove != this.sideToMove) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.CASTLING[this.castlingRights] ^ Zobrist.CASTLING[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        if (this.enPassantSquare != NO_SQUARE) {
+            key ^= Zobrist.EN_PASSANT_FILE[file(this.enPassantSquare)];
+        }
+        if (enPassantSquare != NO_SQUARE) {
+            key ^= Zobrist.EN_PASSANT_FILE[file(enPassantSquare)];
+        }
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    public int getPhase() {
+        // MAX_PHASE with all pieces on the board, falling towards 0 as they come off
+        return phase;
+    }
+
+    public int getPly() {
+        // Number of moves that can currently be taken back
+        return undoCount;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+}
@@ -0,0 +1,150 @@
+package bitboard;
+
+import static bitboard.Bitboards.*;
+
+public final class San {
+    // Standard Algebraic Notation, as used in PGN: "e4", "Nbd7", "exd6",
+    // "O-O", "e8=Q+". Moves are resolved against the legal moves of the
+    // position, so anything accepted here is playable.
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private San() {
+    }
+
+    public static int parse(Position position, String san) {
+        // Returns the matching legal move, or Move.NONE if there is none or the
+        // text is ambiguous. Check, mate and annotation marks are ignored
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String text = san.substring(0, end);
+        MoveList moves = MoveGenerator.generateLegalMoves(position);
+
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            int flags = text.length() == 3 ? Move.KING_CASTLE : Move.QUEEN_CASTLE;
+            for (int i = 0; i < moves.size(); i++) {
+                if (Move.flags(moves.get(i)) == flags) {
+                    return moves.get(i);
+                }
+            }
+            return Move.NONE;
+        }
+
+        // Promotion piece, written "e8=Q" or "e8Q"
+        int promotion = EMPTY;
+        if (text.length() > 2 && PIECE_LETTERS.indexOf(text.charAt(text.length() - 1)) > 0) {
+            promotion = PIECE_LETTERS.indexOf(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - (text.charAt(text.length() - 2) == '=' ? 2 : 1));
+        }
+        if (text.length() < 2) {
+            return Move.NONE;
+        }
+
+        // Piece letter (none for pawns), optional from file and/or rank, optional 'x', target square
+        int type = PAWN;
+        int start = 0;
+        if (PIECE_LETTERS.indexOf(text.charAt(0)) > 0) {
+            type = PIECE_LETTERS.indexOf(text.charAt(0));
+            start = 1;
+        }
+        int toFile = text.charAt(text.length() - 2) - 'a';
+        int toRank = text.charAt(text.length() - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return Move.NONE;
+        }
+        int to = toRank * 8 + toFile;
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < text.length() - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int found = Move.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = Move.from(move);
+            if (Move.to(move) != to || typeOf(position.getPiece(from)) != type || Move.isCastle(move)
+                || (fromFile >= 0 && file(from) != fromFile) || (fromRank >= 0 && rank(from) != fromRank)) {
+                continue;
+            }
+            if (Move.isPromotion(move) ? Move.promotionType(move) != promotion : promotion != EMPTY) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                // Ambiguous
+                return Move.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    public static String format(Position position, int move) {
+        // The move must be legal in the position, which is left unchanged
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = typeOf(position.getPiece(from));
+        StringBuilder text = new StringBuilder(8);
+
+        if (Move.flags(move) == Move.KING_CASTLE) {
+            text.append("O-O");
+        } else if (Move.flags(move) == Move.QUEEN_CASTLE) {
+            text.append("O-O-O");
+        } else if (type == PAWN) {
+            if (Move.isCapture(move)) {
+                text.append((char) ('a' + file(from))).append('x');
+            }
+            text.append(squareName(to));
+            if (Move.isPromotion(move)) {
+                text.append('=').append(PIECE_LETTERS.charAt(Move.promotionType(move)));
+            }
+        } else {
+            text.append(PIECE_LETTERS.charAt(type));
+
+            // Disambiguate by file if that is enough, else by rank, else by both
+            MoveList moves = MoveGenerator.generateLegalMoves(position);
+            boolean ambiguous = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+            for (int i = 0; i < moves.size(); i++) {
+                int other = moves.get(i);
+                int otherFrom = Move.from(other);
+                if (other != move && Move.to(other) == to && otherFrom != from
+                    && typeOf(position.getPiece(otherFrom)) == type) {
+                    ambiguous = true;
+                    sameFile |= file(otherFrom) == file(from);
+                    sameRank |= rank(otherFrom) == rank(from);
+                }
+            }
+            if (ambiguous) {
+                if (!sameFile) {
+                    text.append((char) ('a' + file(from)));
+                } else if (!sameRank) {
+                    text.append((char) ('1' + rank(from)));
+                } else {
+                    text.append(squareName(from));
+                }
+            }
+            if (Move.isCapture(move)) {
+                text.append('x');
+            }
+            text.append(squareName(to));
+        }
+
+        // Check or mate
+        position.makeMove(move);
+        if (position.isInCheck(position.getSideToMove())) {
+            text.append(MoveGenerator.generateLegalMoves(position).isEmpty() ? '#' : '+');
+        }
+        position.unmakeMove(move);
+        return text.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package bitboard;
+
+public final class Zobrist {
+    // Random keys XORed together to give each position a 64-bit hash:
+    // one per (piece, square), one per castling rights combination,
+    // one per en passant file and one for black to move
+    static final long[][] PIECE_SQUARE = new long[12][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT_FILE = new long[8];
+    static final long BLACK_TO_MOVE;
+
+    // Starting value of the pawn-only key, so that a position without pawns
+    // does not hash to 0 (which pawn tables use to mean an empty slot)
+    static final long NO_PAWNS;
+
+    // Fixed seed so that keys (and anything persisted with them) are stable between runs
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_SQUARE[piece][square] = nextRandom();
+            }
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            CASTLING[rights] = nextRandom();
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = nextRandom();
+        }
+        BLACK_TO_MOVE = nextRandom();
+        NO_PAWNS = nextRandom();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long computeKey(Position position) {
+        // Hash a position from scratch; Position keeps its key up to date
+        // incrementally, so this is only needed to verify or initialise it
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != Bitboards.EMPTY) {
+                key ^= PIECE_SQUARE[piece][square];
+            }
+        }
+        key ^= CASTLING[position.getCastlingRights()];
+        if (position.getEnPassantSquare() != Bitboards.NO_SQUARE) {
+            key ^= EN_PASSANT_FILE[Bitboards.file(position.getEnPassantSquare())];
+        }
+        if (position.getSideToMove() == Bitboards.BLACK) {
+            key ^= BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    public static long computePawnKey(Position position) {
+        // Hash of the pawns alone, again only for verification or initialisation
+        long key = NO_PAWNS;
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != Bitboards.EMPTY && Bitboards.typeOf(piece) == Bitboards.PAWN) {
+                key ^= PIECE_SQUARE[piece][square];
+            }
+        }
+        return key;
+    }
+
+    private static long nextRandom() {
+        // splitmix64 generator
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
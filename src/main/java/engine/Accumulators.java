@@ -0,0 +1,95 @@
+package engine;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+import static engine.Search.MATE;
+import static engine.Search.MAX_PLY;
+
+class Accumulators {
+    // The network's hidden layer for both perspectives, one pair per ply.
+    // Making a move copies the parent's pair and applies only the few inputs
+    // that changed; unmaking a move just steps back to the parent.
+    private final Network network;
+    private final short[][][] stack;
+    private int top;
+
+    Accumulators(Network network) {
+        this.network = network;
+        // The search goes at most MAX_PLY deep, and the root takes one more
+        this.stack = new short[MAX_PLY + 1][2][network.hiddenSize];
+    }
+
+    void refresh(Position position) {
+        // Rebuild the current pair from the pieces on the board
+        top = 0;
+        short[][] current = stack[0];
+        for (int perspective = WHITE; perspective <= BLACK; perspective++) {
+            System.arraycopy(network.featureBiases, 0, current[perspective], 0, network.hiddenSize);
+        }
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != EMPTY) {
+                add(current, piece, square);
+            }
+        }
+    }
+
+    void push(Position position, int move) {
+        // Called before the move is made, while the board still shows what it moves and captures
+        short[][] parent = stack[top];
+        short[][] child = stack[++top];
+        for (int perspective = WHITE; perspective <= BLACK; perspective++) {
+            System.arraycopy(parent[perspective], 0, child[perspective], 0, network.hiddenSize);
+        }
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int piece = position.getPiece(from);
+        int us = colourOf(piece);
+
+        if (flags == Move.EN_PASSANT) {
+            subtract(child, pieceCode(us ^ 1, PAWN), us == WHITE ? to - 8 : to + 8);
+        } else if (Move.isCapture(move)) {
+            subtract(child, position.getPiece(to), to);
+        }
+        subtract(child, piece, from);
+        add(child, Move.isPromotion(move) ? pieceCode(us, Move.promotionType(move)) : piece, to);
+
+        if (flags == Move.KING_CASTLE) {
+            subtract(child, pieceCode(us, ROOK), to + 1);
+            add(child, pieceCode(us, ROOK), to - 1);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            subtract(child, pieceCode(us, ROOK), to - 2);
+            add(child, pieceCode(us, ROOK), to + 1);
+        }
+    }
+
+    void pop() {
+        top--;
+    }
+
+    int evaluate(int sideToMove) {
+        // Score from the side to move's point of view: its own perspective
+        // feeds the first half of the output weights. An untrained or badly
+        // scaled network can give anything, so the score is kept below the
+        // mate range (and so inside the transposition table's 16 bits)
+        short[][] current = stack[top];
+        int sum = network.kernels.output(current[sideToMove], current[sideToMove ^ 1], network.outputWeights);
+        long score = ((long) sum + network.outputBias) * Network.SCALE / (Network.QA * Network.QB);
+        return (int) Math.max(-(MATE - MAX_PLY - 1), Math.min(MATE - MAX_PLY - 1, score));
+    }
+
+    private void add(short[][] pair, int piece, int square) {
+        network.kernels.add(pair[WHITE], network.featureWeights, Network.featureOffset(WHITE, piece, square) * network.hiddenSize);
+        network.kernels.add(pair[BLACK], network.featureWeights, Network.featureOffset(BLACK, piece, square) * network.hiddenSize);
+    }
+
+    private void subtract(short[][] pair, int piece, int square) {
+        network.kernels.subtract(pair[WHITE], network.featureWeights, Network.featureOffset(WHITE, piece, square) * network.hiddenSize);
+        network.kernels.subtract(pair[BLACK], network.featureWeights, Network.featureOffset(BLACK, piece, square) * network.hiddenSize);
+    }
+}
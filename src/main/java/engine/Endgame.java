@@ -0,0 +1,346 @@
+package engine;
+
+// Standard imports
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static bitboard.Bitboards.*;
+
+public final class Endgame {
+    // One tablebase ending, named like "KQvKR" with the stronger side first,
+    // and the layout of its table. The stronger side is white in the table;
+    // a position with the colours the other way round is looked up with the
+    // board turned over.
+    //
+    // Pieces are kept in slots: the two kings, then the stronger side's other
+    // pieces and the weaker side's, each strongest first. A position's index
+    // is its king pair's number times the squares of the other pieces, after
+    // turning the board so the stronger king sits in one part of it: the
+    // a1-d1-d4 triangle when there are no pawns (any of 8 symmetries) or
+    // files a-d when there are (mirroring only). Adjacent kings are never
+    // given a number, and pawns only take the 48 squares they can stand on.
+    static final String PIECE_LETTERS = "PNBRQK";
+    static final int MAX_PIECES = 4;
+
+    // Order of strength for naming, strongest first
+    private static final int[] STRENGTH = {QUEEN, ROOK, BISHOP, KNIGHT, PAWN};
+
+    // King pairs: number for each (stronger king, weaker king) in the
+    // standard orientation, -1 for none, and the squares back from a number
+    private static final int[] PAWNLESS_KINGS = new int[64 * 64];
+    private static final int[] PAWN_KINGS = new int[64 * 64];
+    private static final int[] PAWNLESS_KING_SQUARES;
+    private static final int[] PAWN_KING_SQUARES;
+
+    static {
+        PAWNLESS_KING_SQUARES = kingPairs(PAWNLESS_KINGS, false);
+        PAWN_KING_SQUARES = kingPairs(PAWN_KINGS, true);
+    }
+
+    private final String name;
+    private final int[] pieces;
+    private final boolean pawns;
+    private final int size;
+
+    private Endgame(String name, int[] pieces) {
+        this.name = name;
+        this.pieces = pieces;
+        boolean anyPawns = false;
+        long entries = 1;
+        for (int slot = 2; slot < pieces.length; slot++) {
+            anyPawns |= typeOf(pieces[slot]) == PAWN;
+            entries *= typeOf(pieces[slot]) == PAWN ? 48 : 64;
+        }
+        this.pawns = anyPawns;
+        this.size = (int) (entries * (anyPawns ? PAWN_KING_SQUARES.length : PAWNLESS_KING_SQUARES.length) / 2);
+    }
+
+    public static Endgame of(String name) {
+        // "KRvKP" and the like; the sides may be given either way round
+        int separator = name.indexOf('v');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Not an ending: " + name);
+        }
+        int[] counts = new int[12];
+        String[] sides = {name.substring(0, separator), name.substring(separator + 1)};
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            String side = sides[colour];
+            if (side.isEmpty() || side.charAt(0) != 'K' || side.indexOf('K', 1) >= 0) {
+                throw new IllegalArgumentException("Each side needs one king: " + name);
+            }
+            for (int i = 1; i < side.length(); i++) {
+                int type = PIECE_LETTERS.indexOf(side.charAt(i));
+                if (type < 0) {
+                    throw new IllegalArgumentException("Unknown piece '" + side.charAt(i) + "' in " + name);
+                }
+                counts[pieceCode(colour, type)]++;
+            }
+        }
+        int total = 2;
+        for (int count : counts) {
+            total += count;
+        }
+        if (total > MAX_PIECES) {
+            throw new IllegalArgumentException("Only endings of up to " + MAX_PIECES + " pieces: " + name);
+        }
+        return of(counts, isSwapped(counts));
+    }
+
+    static Endgame of(int[] counts, boolean swapped) {
+        // The ending for counts of each piece code (kings left out), with
+        // the colours swapped first if black is the stronger side
+        int[] pieces = new int[MAX_PIECES];
+        int slots = 2;
+        pieces[0] = pieceCode(WHITE, KING);
+        pieces[1] = pieceCode(BLACK, KING);
+        StringBuilder name = new StringBuilder("K");
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            int from = swapped ? colour ^ 1 : colour;
+            if (colour == BLACK) {
+                name.append("vK");
+            }
+            for (int type : STRENGTH) {
+                for (int i = 0; i < counts[pieceCode(from, type)]; i++) {
+                    pieces[slots++] = pieceCode(colour, type);
+                    name.append(PIECE_LETTERS.charAt(type));
+                }
+            }
+        }
+        return new Endgame(name.toString(), Arrays.copyOf(pieces, slots));
+    }
+
+    static boolean isSwapped(int[] counts) {
+        // Whether black has the stronger material: more pieces, or as many
+        // with the first difference in black's favour
+        int white = 0;
+        int black = 0;
+        for (int type : STRENGTH) {
+            white += counts[pieceCode(WHITE, type)];
+            black += counts[pieceCode(BLACK, type)];
+        }
+        if (white != black) {
+            return black > white;
+        }
+        for (int type : STRENGTH) {
+            if (counts[pieceCode(WHITE, type)] != counts[pieceCode(BLACK, type)]) {
+                return counts[pieceCode(BLACK, type)] > counts[pieceCode(WHITE, type)];
+            }
+        }
+        return false;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getPieceCount() {
+        return pieces.length;
+    }
+
+    int getPiece(int slot) {
+        return pieces[slot];
+    }
+
+    boolean hasPawns() {
+        return this.pawns;
+    }
+
+    public int getSize() {
+        // Entries for each side to move
+        return this.size;
+    }
+
+    public int getPawnCount() {
+        int pawnCount = 0;
+        for (int slot = 2; slot < pieces.length; slot++) {
+            pawnCount += typeOf(pieces[slot]) == PAWN ? 1 : 0;
+        }
+        return pawnCount;
+    }
+
+    public List<Endgame> getSubEndgames() {
+        // The endings a capture or promotion can lead to, which need their
+        // tables before this one can be made (bare kings need none)
+        List<Endgame> endgames = new ArrayList<>();
+        int[] counts = new int[12];
+        for (int slot = 2; slot < pieces.length; slot++) {
+            counts[pieces[slot]]++;
+        }
+        for (int piece = 0; piece < 12; piece++) {
+            if (counts[piece] == 0) {
+                continue;
+            }
+            counts[piece]--;
+            if (pieces.length > 3) {
+                addEndgame(endgames, counts);
+            }
+            if (typeOf(piece) == PAWN) {
+                for (int type = KNIGHT; type <= QUEEN; type++) {
+                    counts[pieceCode(colourOf(piece), type)]++;
+                    addEndgame(endgames, counts);
+                    counts[pieceCode(colourOf(piece), type)]--;
+                }
+            }
+            counts[piece]++;
+        }
+        return endgames;
+    }
+
+    private static void addEndgame(List<Endgame> endgames, int[] counts) {
+        Endgame endgame = of(counts, isSwapped(counts));
+        if (endgames.stream().noneMatch(other -> other.name.equals(endgame.name))) {
+            endgames.add(endgame);
+        }
+    }
+
+    public static List<Endgame> all() {
+        // Every ending of three and four pieces, in an order in which each
+        // one's sub-endings come before it
+        List<Endgame> endgames = new ArrayList<>();
+        String strength = "QRBNP";
+        for (int i = 0; i < strength.length(); i++) {
+            endgames.add(of("K" + strength.charAt(i) + "vK"));
+        }
+        for (int i = 0; i < strength.length(); i++) {
+            for (int j = i; j < strength.length(); j++) {
+                endgames.add(of("K" + strength.charAt(i) + strength.charAt(j) + "vK"));
+                endgames.add(of("K" + strength.charAt(i) + "vK" + strength.charAt(j)));
+            }
+        }
+        endgames.sort(Comparator.comparingInt(Endgame::getPieceCount).thenComparingInt(Endgame::getPawnCount));
+        return endgames;
+    }
+
+    int freeSlot(int piece, int used) {
+        // First slot holding this piece that is not in the used mask, or -1
+        for (int slot = 0; slot < pieces.length; slot++) {
+            if (pieces[slot] == piece && (used & (1 << slot)) == 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    int index(int[] squares) {
+        return index(squares[0], squares[1], pieces.length > 2 ? squares[2] : 0, pieces.length > 3 ? squares[3] : 0);
+    }
+
+    int index(int king, int otherKing, int square2, int square3) {
+        // Index of the position with pieces on these squares (slot order),
+        // in any orientation; -1 when the kings stand next to each other.
+        // Squares of slots the ending does not have are ignored
+        int symmetry = symmetry(king, otherKing, square2, square3);
+        int kings = (pawns ? PAWN_KINGS : PAWNLESS_KINGS)[transform(king, symmetry) * 64 + transform(otherKing, symmetry)];
+        if (kings < 0) {
+            return -1;
+        }
+        long index = kings;
+        if (pieces.length > 2) {
+            index = index * radix(2) + digit(2, transform(square2, symmetry));
+        }
+        if (pieces.length > 3) {
+            index = index * radix(3) + digit(3, transform(square3, symmetry));
+        }
+        return (int) index;
+    }
+
+    void decode(int index, int[] squares) {
+        // The squares of the position at an index, in the standard orientation
+        for (int slot = pieces.length - 1; slot >= 2; slot--) {
+            int radix = radix(slot);
+            int digit = index % radix;
+            index /= radix;
+            squares[slot] = typeOf(pieces[slot]) == PAWN ? digit + 8 : digit;
+        }
+        int[] kingSquares = pawns ? PAWN_KING_SQUARES : PAWNLESS_KING_SQUARES;
+        squares[0] = kingSquares[index * 2];
+        squares[1] = kingSquares[index * 2 + 1];
+    }
+
+    private int radix(int slot) {
+        return typeOf(pieces[slot]) == PAWN ? 48 : 64;
+    }
+
+    private int digit(int slot, int square) {
+        return typeOf(pieces[slot]) == PAWN ? square - 8 : square;
+    }
+
+    private int symmetry(int king, int otherKing, int square2, int square3) {
+        // Bit 0 mirrors the files, bit 1 the ranks, bit 2 swaps files and ranks.
+        // With pawns only the files may be mirrored
+        int symmetry = file(king) > 3 ? 1 : 0;
+        if (pawns) {
+            return symmetry;
+        }
+        if (rank(king) > 3) {
+            symmetry |= 2;
+        }
+        int square = transform(king, symmetry);
+        if (rank(square) > file(square)) {
+            symmetry |= 4;
+        }
+
+        // A king on the a1-h8 diagonal stays put when the board is turned about
+        // it, so the first piece off that diagonal decides which way it goes
+        square = transform(king, symmetry);
+        if (rank(square) == file(square)) {
+            for (int slot = 1; slot < pieces.length; slot++) {
+                int other = transform(slot == 1 ? otherKing : slot == 2 ? square2 : square3, symmetry);
+                if (rank(other) != file(other)) {
+                    if (rank(other) > file(other)) {
+                        symmetry ^= 4;
+                    }
+                    break;
+                }
+            }
+        }
+        return symmetry;
+    }
+
+    static int transform(int square, int symmetry) {
+        if ((symmetry & 1) != 0) {
+            square ^= 7;
+        }
+        if ((symmetry & 2) != 0) {
+            square ^= 56;
+        }
+        if ((symmetry & 4) != 0) {
+            square = ((square & 7) << 3) | (square >>> 3);
+        }
+        return square;
+    }
+
+    private static int[] kingPairs(int[] numbers, boolean pawns) {
+        // Number every pair of kings that are apart, with the stronger king in
+        // the standard part of the board (and, on the diagonal, the other king
+        // on or below it)
+        Arrays.fill(numbers, -1);
+        int[] squares = new int[64 * 64 * 2];
+        int count = 0;
+        for (int king = 0; king < 64; king++) {
+            if (file(king) > 3 || (!pawns && rank(king) > file(king))) {
+                continue;
+            }
+            for (int otherKing = 0; otherKing < 64; otherKing++) {
+                if (Math.abs(file(king) - file(otherKing)) <= 1 && Math.abs(rank(king) - rank(otherKing)) <= 1) {
+                    continue;
+                }
+                if (!pawns && rank(king) == file(king) && rank(otherKing) > file(otherKing)) {
+                    continue;
+                }
+                numbers[king * 64 + otherKing] = count;
+                squares[count * 2] = king;
+                squares[count * 2 + 1] = otherKing;
+                count++;
+            }
+        }
+        return Arrays.copyOf(squares, count * 2);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,50 @@
+package engine;
+
+// Custom imports
+import bitboard.PieceSquareTables;
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+public final class Evaluation {
+    // Plain material values in centipawns, indexed by piece type, used where a
+    // rough exchange value is enough (static exchange, delta pruning)
+    static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};
+
+    private Evaluation() {
+    }
+
+    public static int evaluate(Position position) {
+        // Without a pawn table the pawn structure is worked out on the spot,
+        // which is fine for one-off calls outside the search
+        int[] pawnScores = new int[PawnStructure.SIZE];
+        PawnStructure.evaluate(position.getPieces(WHITE, PAWN), position.getPieces(BLACK, PAWN), pawnScores, 0);
+        return evaluate(position, pawnScores, 0);
+    }
+
+    public static int evaluate(Position position, PawnHashTable pawnTable) {
+        int offset = pawnTable.probe(position);
+        return evaluate(position, pawnTable.scores(), offset);
+    }
+
+    private static int evaluate(Position position, int[] pawnScores, int offset) {
+        // Material and piece-square scores are kept as running sums by the
+        // position and the pawn terms come ready-made, so all that is left is
+        // to add them, blend middlegame and endgame by the phase and turn the
+        // result round for the side to move
+        int middlegame = position.getMiddlegameScore() + pawnScores[offset + PawnStructure.MIDDLEGAME];
+        int endgame = position.getEndgameScore() + pawnScores[offset + PawnStructure.ENDGAME];
+
+        // The king shield only matters while there are pieces left to attack with
+        int whiteKing = position.getKingSquare(WHITE);
+        int blackKing = position.getKingSquare(BLACK);
+        if (whiteKing != NO_SQUARE && blackKing != NO_SQUARE) {
+            middlegame += pawnScores[offset + PawnStructure.SHIELD + file(whiteKing)]
+                        - pawnScores[offset + PawnStructure.SHIELD + 8 + file(blackKing)];
+        }
+
+        int phase = Math.min(position.getPhase(), PieceSquareTables.MAX_PHASE);
+        int score = (middlegame * phase + endgame * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+        return position.getSideToMove() == WHITE ? score : -score;
+    }
+}
@@ -0,0 +1,210 @@
+package engine;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+class MovePicker {
+    // Stages, in the order moves are handed out
+    private static final int HASH = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int CAPTURES = 2;
+    private static final int KILLERS = 3;
+    private static final int GENERATE_QUIETS = 4;
+    private static final int QUIETS = 5;
+    private static final int BAD_CAPTURES = 6;
+    private static final int DONE = 7;
+
+    private static final int[] NO_KILLERS = {Move.NONE, Move.NONE};
+
+    // MVV-LVA: the most valuable victim first, then the least valuable attacker.
+    // Promotions rank with the capture of the piece they gain
+    private static final int[] VICTIM_SCORES = {100, 300, 300, 500, 900, 0};
+    private static final int[] ATTACKER_SCORES = {5, 4, 4, 3, 2, 1};
+
+    // Buffers reused from node to node; there is one picker per ply
+    private final MoveList captures = new MoveList();
+    private final MoveList quiets = new MoveList();
+    private final MoveList badCaptures = new MoveList();
+    private final int[] captureScores = new int[MoveList.CAPACITY];
+    private final int[] quietScores = new int[MoveList.CAPACITY];
+
+    private Position position;
+    private int hashMove;
+    private int killer1;
+    private int killer2;
+    private int[][] history;
+    private int stage;
+    private int index;
+    private boolean capturesGenerated;
+    private boolean quietsGenerated;
+    private boolean capturesOnly;
+
+    void init(Position position, int hashMove, int[] killers, int[][] history) {
+        // Start handing out moves for a new node
+        this.position = position;
+        this.hashMove = hashMove;
+        this.killer1 = killers[0];
+        this.killer2 = killers[1];
+        this.history = history;
+        this.stage = HASH;
+        this.capturesGenerated = false;
+        this.quietsGenerated = false;
+        this.capturesOnly = false;
+        badCaptures.clear();
+    }
+
+    void initQuiescence(Position position, int[][] history) {
+        // Captures and promotions only, with losing captures dropped altogether
+        init(position, Move.NONE, NO_KILLERS, history);
+        this.capturesOnly = true;
+    }
+
+    int next() {
+        // The next move to search, or Move.NONE once every legal move (or every
+        // good capture, in quiescence) has been returned.
+        // Moves are only generated when the stage that needs them is reached, so a
+        // cutoff by the hash move or a capture never pays for the quiet moves
+        while (true) {
+            switch (stage) {
+                case HASH:
+                    stage = GENERATE_CAPTURES;
+                    if (hashMove != Move.NONE && isLegal(hashMove)) {
+                        return hashMove;
+                    }
+                    break;
+                case GENERATE_CAPTURES:
+                    generateCaptures();
+                    for (int i = 0; i < captures.size(); i++) {
+                        captureScores[i] = captureScore(captures.get(i));
+                    }
+                    index = 0;
+                    stage = CAPTURES;
+                    break;
+                case CAPTURES:
+                    while (index < captures.size()) {
+                        int move = pickBest(captures, captureScores);
+                        if (move == hashMove) {
+                            continue;
+                        }
+                        // Captures that lose material by exchange are put off until
+                        // after the quiet moves (or skipped in quiescence)
+                        if (Move.isCapture(move) && !Move.isPromotion(move) && !StaticExchange.isAtLeast(position, move, 0)) {
+                            if (!capturesOnly) {
+                                badCaptures.add(move);
+                            }
+                            continue;
+                        }
+                        return move;
+                    }
+                    if (capturesOnly) {
+                        stage = DONE;
+                        break;
+                    }
+                    // Killers are only played if they are legal quiet moves here
+                    generateQuiets();
+                    index = 0;
+                    stage = KILLERS;
+                    break;
+                case KILLERS:
+                    while (index < 2) {
+                        int killer = index++ == 0 ? killer1 : killer2;
+                        if (killer != Move.NONE && killer != hashMove && quiets.contains(killer)) {
+                            return killer;
+                        }
+                    }
+                    stage = GENERATE_QUIETS;
+                    break;
+                case GENERATE_QUIETS:
+                    for (int i = 0; i < quiets.size(); i++) {
+                        int move = quiets.get(i);
+                        quietScores[i] = history[position.getPiece(Move.from(move))][Move.to(move)];
+                    }
+                    index = 0;
+                    stage = QUIETS;
+                    break;
+                case QUIETS:
+                    while (index < quiets.size()) {
+                        int move = pickBest(quiets, quietScores);
+                        if (move != hashMove && move != killer1 && move != killer2) {
+                            return move;
+                        }
+                    }
+                    index = 0;
+                    stage = BAD_CAPTURES;
+                    break;
+                case BAD_CAPTURES:
+                    if (index < badCaptures.size()) {
+                        return badCaptures.get(index++);
+                    }
+                    stage = DONE;
+                    break;
+                default:
+                    return Move.NONE;
+            }
+        }
+    }
+
+    private boolean isLegal(int move) {
+        // A hash move may come from a different position that shares a table slot,
+        // so check it against the moves of its kind (generated once, kept for later)
+        if (Move.isCapture(move) || Move.isPromotion(move)) {
+            generateCaptures();
+            return captures.contains(move);
+        }
+        generateQuiets();
+        return quiets.contains(move);
+    }
+
+    private void generateCaptures() {
+        if (!capturesGenerated) {
+            MoveGenerator.generateLegalMoves(position, captures, MoveGenerator.CAPTURES);
+            capturesGenerated = true;
+        }
+    }
+
+    private void generateQuiets() {
+        if (!quietsGenerated) {
+            MoveGenerator.generateLegalMoves(position, quiets, MoveGenerator.QUIETS);
+            quietsGenerated = true;
+        }
+    }
+
+    private int captureScore(int move) {
+        int attacker = typeOf(position.getPiece(Move.from(move)));
+        int victim = position.getPiece(Move.to(move));
+        int score = 0;
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            score = VICTIM_SCORES[PAWN] * 10;
+        } else if (victim != EMPTY) {
+            score = VICTIM_SCORES[typeOf(victim)] * 10;
+        }
+        if (Move.isPromotion(move)) {
+            score += VICTIM_SCORES[Move.promotionType(move)] * 10;
+        }
+        return score + ATTACKER_SCORES[attacker];
+    }
+
+    private int pickBest(MoveList moves, int[] scores) {
+        // Selection sort one step at a time: bring the best remaining move
+        // forward, since usually only the first few are ever searched
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves.get(best);
+        int score = scores[best];
+        moves.set(best, moves.get(index));
+        scores[best] = scores[index];
+        moves.set(index, move);
+        scores[index] = score;
+        index++;
+        return move;
+    }
+}
@@ -0,0 +1,110 @@
+package engine;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Custom imports
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+public class Network {
+    // A small efficiently updatable network: 768 inputs (colour, piece type,
+    // square) seen from each side's perspective, one shared hidden layer per
+    // perspective with a clipped ReLU, and a single output. Weights are
+    // quantised to shorts so the hidden layer can be kept as a running sum.
+    //
+    // File layout, little-endian:
+    //   int    magic ("NNUE") and version (1)
+    //   int    hidden layer size H
+    //   short  feature weights [768][H]
+    //   short  feature biases [H]
+    //   short  output weights [2H], side to move's half first
+    //   int    output bias, scaled by QA * QB
+    public static final int INPUTS = 768;
+    private static final int MAGIC = 0x45554E4E;
+    private static final int VERSION = 1;
+
+    // Quantisation: hidden activations are clipped to [0, QA], output weights
+    // are scaled by QB, and the result is scaled back into centipawns
+    static final int QA = 255;
+    static final int QB = 64;
+    static final int SCALE = 400;
+
+    final int hiddenSize;
+    final short[] featureWeights;
+    final short[] featureBiases;
+    final short[] outputWeights;
+    final int outputBias;
+    final NetworkKernels kernels;
+
+    private Network(int hiddenSize, short[] featureWeights, short[] featureBiases, short[] outputWeights,
+                    int outputBias, NetworkKernels kernels) {
+        this.hiddenSize = hiddenSize;
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        this.kernels = kernels;
+    }
+
+    public static Network load(Path file) throws IOException {
+        return load(file, true);
+    }
+
+    public static Network load(Path file, boolean vectorised) throws IOException {
+        // Reads the whole file in one go; vectorised kernels are used when asked
+        // for and the JVM was started with the Vector API module
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+        }
+
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " network file: " + file);
+        }
+        int hiddenSize = buffer.getInt();
+        long expected = 2L * (INPUTS * (long) hiddenSize + hiddenSize + 2L * hiddenSize) + Integer.BYTES;
+        if (hiddenSize <= 0 || buffer.remaining() != expected) {
+            throw new IOException("Network file has the wrong size for hidden layer " + hiddenSize + ": " + file);
+        }
+
+        short[] featureWeights = new short[INPUTS * hiddenSize];
+        short[] featureBiases = new short[hiddenSize];
+        short[] outputWeights = new short[2 * hiddenSize];
+        buffer.asShortBuffer().get(featureWeights).get(featureBiases).get(outputWeights);
+        buffer.position(buffer.position() + 2 * (featureWeights.length + featureBiases.length + outputWeights.length));
+        int outputBias = buffer.getInt();
+        return new Network(hiddenSize, featureWeights, featureBiases, outputWeights, outputBias,
+                vectorised ? NetworkKernels.best() : new ScalarKernels());
+    }
+
+    public String getKernelName() {
+        return kernels.name();
+    }
+
+    public int evaluate(Position position) {
+        // From scratch, for one-off calls; the search keeps accumulators instead
+        Accumulators accumulators = new Accumulators(this);
+        accumulators.refresh(position);
+        return accumulators.evaluate(position.getSideToMove());
+    }
+
+    static int featureOffset(int perspective, int piece, int square) {
+        // Each side sees its own pieces as the first 384 inputs and the board
+        // from its own end, so one set of weights serves both perspectives
+        if (perspective == BLACK) {
+            piece = pieceCode(colourOf(piece) ^ 1, typeOf(piece));
+            square ^= 56;
+        }
+        return piece * 64 + square;
+    }
+}
@@ -0,0 +1,31 @@
+package engine;
+
+interface NetworkKernels {
+    // The arithmetic of the network, kept apart so that the Vector API
+    // implementation can be swapped for plain loops where it is not available
+
+    // accumulator[i] += weights[offset + i] for every hidden unit
+    void add(short[] accumulator, short[] weights, int offset);
+
+    // accumulator[i] -= weights[offset + i] for every hidden unit
+    void subtract(short[] accumulator, short[] weights, int offset);
+
+    // Sum over i of clamp(us[i], 0, QA) * weights[i] + clamp(them[i], 0, QA) * weights[n + i]
+    int output(short[] us, short[] them, short[] weights);
+
+    String name();
+
+    static NetworkKernels best() {
+        // The incubator module is only there when the JVM was started with
+        // --add-modules jdk.incubator.vector; touching VectorKernels without it
+        // would fail to link, so check first
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorKernels();
+            } catch (LinkageError e) {
+                // Fall through to the scalar loops
+            }
+        }
+        return new ScalarKernels();
+    }
+}
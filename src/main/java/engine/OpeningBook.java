@@ -0,0 +1,251 @@
+package engine;
+
+// Standard imports
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Custom imports
+import bitboard.Attacks;
+import bitboard.Fen;
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+public class OpeningBook {
+    // A Polyglot ".bin" book: 16-byte big-endian entries sorted by position
+    // key, each holding key (8 bytes), move (2), weight (2) and learning data
+    // (4). The file is memory-mapped rather than read, so even a book of
+    // several hundred MB opens at once and costs no heap; a probe is a binary
+    // search over the mapping and allocates nothing until a move is found.
+    private static final int ENTRY_BYTES = 16;
+
+    // Mappings are limited to 2 GB each, so larger books are mapped in pieces
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_ENTRIES = 1L << SEGMENT_SHIFT;
+
+    // Polyglot keys are built from its own fixed table of 781 random numbers
+    // (768 piece-square, 4 castling, 8 en passant file, 1 white to move), which
+    // has to match the one the book was made with. It is read from this
+    // resource, or from a file given to open(); either way it is checked
+    // against the start position keys published with the format.
+    private static final String KEYS_RESOURCE = "/book/polyglot-random64.txt";
+    private static final int KEY_COUNT = 781;
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final long START_KEY = 0x463B96181691FC9CL;
+    private static final long AFTER_E4_KEY = 0x823C9B50FD114196L;
+
+    private final MappedByteBuffer[] segments;
+    private final long entryCount;
+    private final long[] keys;
+
+    private OpeningBook(MappedByteBuffer[] segments, long entryCount, long[] keys) {
+        this.segments = segments;
+        this.entryCount = entryCount;
+        this.keys = keys;
+    }
+
+    public static OpeningBook open(Path file) throws IOException {
+        try (InputStream in = OpeningBook.class.getResourceAsStream(KEYS_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Polyglot key table not found (resource " + KEYS_RESOURCE + ")");
+            }
+            return open(file, parseKeys(new String(in.readAllBytes(), StandardCharsets.US_ASCII)));
+        }
+    }
+
+    public static OpeningBook open(Path file, Path keyFile) throws IOException {
+        return open(file, parseKeys(Files.readString(keyFile, StandardCharsets.US_ASCII)));
+    }
+
+    private static OpeningBook open(Path file, long[] keys) throws IOException {
+        // The mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_BYTES != 0) {
+                throw new IOException("Not a Polyglot book (size is not a multiple of " + ENTRY_BYTES + "): " + file);
+            }
+            long entryCount = size / ENTRY_BYTES;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((entryCount + SEGMENT_ENTRIES - 1) / SEGMENT_ENTRIES)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_ENTRIES * ENTRY_BYTES;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_ENTRIES * ENTRY_BYTES, size - start));
+            }
+            return new OpeningBook(segments, entryCount, keys);
+        }
+    }
+
+    private static long[] parseKeys(String text) throws IOException {
+        // 781 hexadecimal numbers in order, in any layout: the C array from the
+        // format's description can be pasted in as it is ("0x", "U" and "ULL"
+        // are allowed, as are commas, braces and comments between numbers)
+        long[] keys = new long[KEY_COUNT];
+        int count = 0;
+        for (String token : text.split("[^0-9A-Za-z]+")) {
+            String hex = token.startsWith("0x") || token.startsWith("0X") ? token.substring(2) : token;
+            hex = hex.replaceAll("[Uu][Ll]*$", "");
+            if (hex.length() != 16 || !hex.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+                continue;
+            }
+            if (count == KEY_COUNT) {
+                throw new IOException("Polyglot key table has more than " + KEY_COUNT + " keys");
+            }
+            keys[count++] = Long.parseUnsignedLong(hex, 16);
+        }
+        if (count != KEY_COUNT) {
+            throw new IOException("Polyglot key table has " + count + " keys, expected " + KEY_COUNT);
+        }
+
+        // A wrong table would silently miss every position, so make sure
+        Position position = Fen.parse(Fen.START);
+        long start = key(position, keys);
+        position.makeMove(Move.encode(E1 + 8, E1 + 24, Move.DOUBLE_PUSH)); // e2-e4
+        if (start != START_KEY || key(position, keys) != AFTER_E4_KEY) {
+            throw new IOException("Polyglot key table does not give the published keys for the start position");
+        }
+        return keys;
+    }
+
+    public long getEntryCount() {
+        return this.entryCount;
+    }
+
+    public long getKey(Position position) {
+        return key(position, keys);
+    }
+
+    public int pickWeighted(Position position) {
+        // A book move chosen at random in proportion to its weight, or
+        // Move.NONE when the position is not in the book
+        long key = key(position, keys);
+        long first = lowerBound(key);
+        long total = 0;
+        for (long i = first; i < entryCount && entryKey(i) == key; i++) {
+            total += entryWeight(i);
+        }
+        if (total == 0) {
+            return Move.NONE;
+        }
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        for (long i = first; ; i++) {
+            pick -= entryWeight(i);
+            if (pick < 0) {
+                return toMove(position, entryMove(i));
+            }
+        }
+    }
+
+    public int pickBest(Position position) {
+        // The book move with the highest weight, or Move.NONE
+        long key = key(position, keys);
+        int best = -1;
+        int bestWeight = 0;
+        for (long i = lowerBound(key); i < entryCount && entryKey(i) == key; i++) {
+            if (entryWeight(i) > bestWeight) {
+                bestWeight = entryWeight(i);
+                best = entryMove(i);
+            }
+        }
+        return best < 0 ? Move.NONE : toMove(position, best);
+    }
+
+    private long lowerBound(long key) {
+        // First entry whose key is not below the given one; keys are compared
+        // unsigned, as the book is sorted
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(entryKey(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long entryKey(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].getLong((int) (index & (SEGMENT_ENTRIES - 1)) * ENTRY_BYTES);
+    }
+
+    private int entryMove(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].getShort((int) (index & (SEGMENT_ENTRIES - 1)) * ENTRY_BYTES + 8) & 0xFFFF;
+    }
+
+    private int entryWeight(long index) {
+        return segments[(int) (index >>> SEGMENT_SHIFT)].getShort((int) (index & (SEGMENT_ENTRIES - 1)) * ENTRY_BYTES + 10) & 0xFFFF;
+    }
+
+    private static int toMove(Position position, int bookMove) {
+        // Book moves are to (6 bits), from (6) and promotion piece (3, knight
+        // to queen as 1 to 4), with squares numbered a1 = 0 as here. Castling
+        // is written as the king taking its own rook, e1h1 rather than e1g1
+        int to = bookMove & 63;
+        int from = (bookMove >>> 6) & 63;
+        int promotion = (bookMove >>> 12) & 7;
+        if (typeOf(position.getPiece(from)) == KING && position.getPiece(to) == pieceCode(colourOf(position.getPiece(from)), ROOK)) {
+            to = to > from ? from + 2 : from - 2;
+        }
+
+        // Only a legal move is returned, however the book came to be made
+        MoveList moves = MoveGenerator.generateLegalMoves(position);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.from(move) == from && Move.to(move) == to
+                && (Move.isPromotion(move) ? Move.promotionType(move) == promotion : promotion == 0)) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    private static long key(Position position, long[] keys) {
+        // Polyglot orders pieces black pawn, white pawn, black knight, ... and
+        // only counts an en passant square if a pawn could actually take there
+        long key = 0;
+        long occupancy = position.getOccupancy();
+        while (occupancy != 0) {
+            int square = Long.numberOfTrailingZeros(occupancy);
+            occupancy &= occupancy - 1;
+            int piece = position.getPiece(square);
+            int kind = typeOf(piece) * 2 + (colourOf(piece) == WHITE ? 1 : 0);
+            key ^= keys[kind * 64 + square];
+        }
+
+        int rights = position.getCastlingRights();
+        if ((rights & WHITE_KINGSIDE) != 0) {
+            key ^= keys[CASTLING_OFFSET];
+        }
+        if ((rights & WHITE_QUEENSIDE) != 0) {
+            key ^= keys[CASTLING_OFFSET + 1];
+        }
+        if ((rights & BLACK_KINGSIDE) != 0) {
+            key ^= keys[CASTLING_OFFSET + 2];
+        }
+        if ((rights & BLACK_QUEENSIDE) != 0) {
+            key ^= keys[CASTLING_OFFSET + 3];
+        }
+
+        int side = position.getSideToMove();
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant != NO_SQUARE && (Attacks.pawnAttacks(side ^ 1, enPassant) & position.getPieces(side, PAWN)) != 0) {
+            key ^= keys[EN_PASSANT_OFFSET + file(enPassant)];
+        }
+        if (side == WHITE) {
+            key ^= keys[TURN_OFFSET];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,50 @@
+package engine;
+
+// Standard imports
+import java.util.Arrays;
+
+// Custom imports
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+public class PawnHashTable {
+    // Pawn structure scores, keyed on the pawn-only hash. Pawns move far less
+    // often than the other pieces, so most probes hit. Every search thread
+    // owns its own table, so there is no locking and no torn entries.
+    private static final int ENTRY_BYTES = Long.BYTES + PawnStructure.SIZE * Integer.BYTES;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+
+    public PawnHashTable(int sizeMb) {
+        long entries = Math.max(1, (long) sizeMb * 1024 * 1024 / ENTRY_BYTES);
+        int entryCount = Integer.highestOneBit((int) Math.min(entries, 1 << 24));
+        this.keys = new long[entryCount];
+        this.scores = new int[entryCount * PawnStructure.SIZE];
+        this.mask = entryCount - 1;
+    }
+
+    public void clear() {
+        // Pawn keys are never 0, so 0 marks an empty slot
+        Arrays.fill(keys, 0L);
+    }
+
+    int probe(Position position) {
+        // Returns the offset of the position's scores in the score array,
+        // computing and storing them first on a miss
+        long key = position.getPawnKey();
+        int index = (int) (key & mask);
+        int offset = index * PawnStructure.SIZE;
+        if (keys[index] != key) {
+            PawnStructure.evaluate(position.getPieces(WHITE, PAWN), position.getPieces(BLACK, PAWN), scores, offset);
+            keys[index] = key;
+        }
+        return offset;
+    }
+
+    int[] scores() {
+        return scores;
+    }
+}
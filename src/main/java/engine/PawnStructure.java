@@ -0,0 +1,116 @@
+package engine;
+
+import static bitboard.Bitboards.*;
+
+final class PawnStructure {
+    // Layout of the scores computed for one pawn structure: middlegame and
+    // endgame totals (white's point of view), then the king shield for each
+    // colour with the king on each file, white's eight files first
+    static final int MIDDLEGAME = 0;
+    static final int ENDGAME = 1;
+    static final int SHIELD = 2;
+    static final int SIZE = SHIELD + 16;
+
+    // Penalties and bonuses in centipawns (middlegame, endgame)
+    private static final int DOUBLED_MIDDLEGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+
+    // Passed pawn bonus by rank as seen from the pawn's own side
+    private static final int[] PASSED_MIDDLEGAME = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 15, 25, 45, 70, 110, 0};
+
+    // King shield, per file next to the king: a pawn still on its second or
+    // third rank, or nothing useful at all
+    private static final int SHIELD_SECOND_RANK = 10;
+    private static final int SHIELD_THIRD_RANK = 5;
+    private static final int SHIELD_MISSING = -15;
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+
+    // Squares in front of a pawn, on its own and the adjacent files, that
+    // must be free of enemy pawns for it to count as passed
+    private static final long[][] PASSED_SPANS = new long[2][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = FILE_A << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            long files = FILES[file(square)] | ADJACENT_FILES[file(square)];
+            long above = rank(square) == 7 ? 0 : -1L << (8 * (rank(square) + 1));
+            long below = (1L << (8 * rank(square))) - 1;
+            PASSED_SPANS[WHITE][square] = files & above;
+            PASSED_SPANS[BLACK][square] = files & below;
+        }
+    }
+
+    private PawnStructure() {
+    }
+
+    static void evaluate(long whitePawns, long blackPawns, int[] scores, int offset) {
+        // Fill scores[offset .. offset + SIZE) for the given pawns; depends on
+        // nothing but the two pawn sets, which is what makes it cacheable
+        int middlegame = 0;
+        int endgame = 0;
+        long[] pawns = {whitePawns, blackPawns};
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            long own = pawns[colour];
+            long enemy = pawns[colour ^ 1];
+            int sign = colour == WHITE ? 1 : -1;
+
+            for (int file = 0; file < 8; file++) {
+                int count = Long.bitCount(own & FILES[file]);
+                if (count == 0) {
+                    continue;
+                }
+                if (count > 1) {
+                    middlegame += sign * DOUBLED_MIDDLEGAME * (count - 1);
+                    endgame += sign * DOUBLED_ENDGAME * (count - 1);
+                }
+                if ((own & ADJACENT_FILES[file]) == 0) {
+                    middlegame += sign * ISOLATED_MIDDLEGAME * count;
+                    endgame += sign * ISOLATED_ENDGAME * count;
+                }
+            }
+
+            for (long remaining = own; remaining != 0; remaining &= remaining - 1) {
+                int square = Long.numberOfTrailingZeros(remaining);
+                if ((PASSED_SPANS[colour][square] & enemy) == 0) {
+                    int relativeRank = colour == WHITE ? rank(square) : 7 - rank(square);
+                    middlegame += sign * PASSED_MIDDLEGAME[relativeRank];
+                    endgame += sign * PASSED_ENDGAME[relativeRank];
+                }
+            }
+
+            for (int kingFile = 0; kingFile < 8; kingFile++) {
+                scores[offset + SHIELD + colour * 8 + kingFile] = shield(own, colour, kingFile);
+            }
+        }
+        scores[offset + MIDDLEGAME] = middlegame;
+        scores[offset + ENDGAME] = endgame;
+    }
+
+    private static int shield(long own, int colour, int kingFile) {
+        // Look at the king's file and its neighbours for a pawn just in front
+        // of the back rank; the king's rank is left to the piece-square tables
+        long secondRank = colour == WHITE ? RANK_2 : RANK_7;
+        long thirdRank = colour == WHITE ? RANK_3 : RANK_6;
+        int score = 0;
+        for (int file = Math.max(0, kingFile - 1); file <= Math.min(7, kingFile + 1); file++) {
+            if ((own & FILES[file] & secondRank) != 0) {
+                score += SHIELD_SECOND_RANK;
+            } else if ((own & FILES[file] & thirdRank) != 0) {
+                score += SHIELD_THIRD_RANK;
+            } else {
+                score += SHIELD_MISSING;
+            }
+        }
+        return score;
+    }
+}
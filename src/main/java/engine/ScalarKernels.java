@@ -0,0 +1,36 @@
+package engine;
+
+class ScalarKernels implements NetworkKernels {
+    @Override
+    public void add(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < accumulator.length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int offset) {
+        for (int i = 0; i < accumulator.length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public int output(short[] us, short[] them, short[] weights) {
+        int n = us.length;
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += clamp(us[i]) * weights[i] + clamp(them[i]) * weights[n + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    static int clamp(short value) {
+        return Math.min(Math.max(value, 0), Network.QA);
+    }
+}
@@ -0,0 +1,206 @@
+package engine;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+import bitboard.Position;
+
+public class Search {
+    public static final int MAX_PLY = 128;
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+
+    // Default hash size when the caller does not share a table
+    private static final int DEFAULT_HASH_MB = 16;
+
+    // Size of each thread's own pawn structure table
+    private static final int DEFAULT_PAWN_HASH_MB = 2;
+
+    // Lazy SMP: every thread searches the same root on its own copy of the
+    // position, and they cooperate only through the shared transposition table
+    private final TranspositionTable transpositionTable;
+    private int threads = 1;
+    private SearchWorker[] workers = new SearchWorker[0];
+
+    // One pawn table per thread, kept from search to search since pawn
+    // structures carry over from one move to the next
+    private int pawnHashMb = DEFAULT_PAWN_HASH_MB;
+    private PawnHashTable[] pawnTables = new PawnHashTable[0];
+
+    private volatile boolean stopped;
+
+    // Set by prepare(): the stop flag has already been cleared for the next
+    // search, so search() must not clear it again and lose an early stop()
+    private boolean prepared;
+    private long deadline;
+    private SearchListener listener;
+    private SearchOptions options = new SearchOptions();
+
+    // Optional neural network evaluation, replacing the hand-written one when set
+    private Network network;
+
+    // Optional endgame tables, giving exact results once few pieces are left
+    private Tablebase tablebase;
+
+    public Search() {
+        this(new TranspositionTable(DEFAULT_HASH_MB));
+    }
+
+    public Search(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    public SearchOptions getOptions() {
+        return this.options;
+    }
+
+    public void setOptions(SearchOptions options) {
+        // Takes effect from the next call to search()
+        this.options = options;
+    }
+
+    public void setNetwork(Network network) {
+        // null goes back to the hand-written evaluation
+        this.network = network;
+    }
+
+    public Network getNetwork() {
+        return this.network;
+    }
+
+    public void setTablebase(Tablebase tablebase) {
+        // null searches endings like any other position
+        this.tablebase = tablebase;
+    }
+
+    public Tablebase getTablebase() {
+        return this.tablebase;
+    }
+
+    public void setThreads(int threads) {
+        // Total search threads, including the one calling search()
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return this.threads;
+    }
+
+    public void setPawnHashSize(int sizeMb) {
+        // Per thread; the tables are rebuilt at the start of the next search
+        this.pawnHashMb = Math.max(1, sizeMb);
+        this.pawnTables = new PawnHashTable[0];
+    }
+
+    public static int mateDistance(int score) {
+        // Moves to mate for a mate score, from whichever point of view the
+        // score is: positive when that side mates, negative when it is mated
+        int plies = MATE - Math.abs(score);
+        int moves = (plies + 1) / 2;
+        return score > 0 ? moves : -moves;
+    }
+
+    public void stop() {
+        // May be called from another thread; every worker unwinds at its next node
+        stopped = true;
+    }
+
+    public void prepare() {
+        // Call on the controlling thread before handing search() to another
+        // one: a stop() from then on counts, even if it comes before search()
+        // has got going
+        stopped = false;
+        prepared = true;
+    }
+
+    public SearchResult search(Position root, SearchLimits limits) {
+        // The calling thread runs the main worker, which decides when to stop and
+        // reports results; helper threads search alongside until it is done
+        long start = System.currentTimeMillis();
+        deadline = limits.hasTimeLimit() ? start + limits.getMoveTimeMillis() : Long.MAX_VALUE;
+        if (!prepared) {
+            stopped = false;
+        }
+        prepared = false;
+        transpositionTable.newSearch();
+
+        // Fall back to any legal move in case not even depth 1 completes
+        MoveList rootMoves = MoveGenerator.generateLegalMoves(root);
+        SearchResult result = new SearchResult(rootMoves.isEmpty() ? Move.NONE : rootMoves.get(0), 0, 0, 0, 0, new int[0]);
+        if (rootMoves.isEmpty()) {
+            workers = new SearchWorker[0];
+            return result;
+        }
+
+        if (pawnTables.length != threads) {
+            pawnTables = new PawnHashTable[threads];
+            for (int id = 0; id < threads; id++) {
+                pawnTables[id] = new PawnHashTable(pawnHashMb);
+            }
+        }
+        workers = new SearchWorker[threads];
+        for (int id = 0; id < threads; id++) {
+            workers[id] = new SearchWorker(this, transpositionTable, pawnTables[id], id, root);
+        }
+        Thread[] helpers = new Thread[threads - 1];
+        for (int id = 1; id < threads; id++) {
+            SearchWorker worker = workers[id];
+            helpers[id - 1] = new Thread(() -> worker.iterate(limits, start, null), "search-helper-" + id);
+            helpers[id - 1].setDaemon(true);
+            helpers[id - 1].start();
+        }
+
+        result = workers[0].iterate(limits, start, result);
+
+        // Call off the helpers and wait for them, so that no thread is still
+        // writing to the table when the next search begins
+        stopped = true;
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return result;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    void checkClock() {
+        if (System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+    }
+
+    void report(SearchResult result) {
+        if (listener != null) {
+            listener.onIteration(result);
+        }
+    }
+
+    public long getNodes() {
+        // Total over all workers of the current or last search
+        long nodes = 0;
+        for (SearchWorker worker : workers) {
+            nodes += worker.getNodes();
+        }
+        return nodes;
+    }
+
+    public long[] getWorkerNodes() {
+        // Nodes searched by each worker, the main one first
+        long[] nodes = new long[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            nodes[i] = workers[i].getNodes();
+        }
+        return nodes;
+    }
+}
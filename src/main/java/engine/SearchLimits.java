@@ -0,0 +1,36 @@
+package engine;
+
+public class SearchLimits {
+    // No limit on a dimension is represented by its maximum value
+    private final int maxDepth;
+    private final long moveTimeMillis;
+
+    public SearchLimits(int maxDepth, long moveTimeMillis) {
+        this.maxDepth = Math.min(maxDepth, Search.MAX_PLY - 1);
+        this.moveTimeMillis = moveTimeMillis;
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits moveTime(long moveTimeMillis) {
+        return new SearchLimits(Integer.MAX_VALUE, moveTimeMillis);
+    }
+
+    public static SearchLimits infinite() {
+        return new SearchLimits(Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    public long getMoveTimeMillis() {
+        return this.moveTimeMillis;
+    }
+
+    public boolean hasTimeLimit() {
+        return moveTimeMillis != Long.MAX_VALUE;
+    }
+}
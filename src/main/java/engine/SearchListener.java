@@ -0,0 +1,6 @@
+package engine;
+
+public interface SearchListener {
+    // Called after each completed iteration of iterative deepening
+    void onIteration(SearchResult result);
+}
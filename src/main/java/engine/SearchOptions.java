@@ -0,0 +1,52 @@
+package engine;
+
+public class SearchOptions {
+    // Selective search features, all on by default. Each can be switched off
+    // on its own to measure what it is worth in nodes and time to a given depth
+    private boolean nullMovePruning = true;
+    private boolean lateMoveReductions = true;
+    private boolean futilityPruning = true;
+    private boolean aspirationWindows = true;
+
+    public boolean isNullMovePruning() {
+        return this.nullMovePruning;
+    }
+
+    public void setNullMovePruning(boolean nullMovePruning) {
+        this.nullMovePruning = nullMovePruning;
+    }
+
+    public boolean isLateMoveReductions() {
+        return this.lateMoveReductions;
+    }
+
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
+    }
+
+    public boolean isFutilityPruning() {
+        return this.futilityPruning;
+    }
+
+    public void setFutilityPruning(boolean futilityPruning) {
+        this.futilityPruning = futilityPruning;
+    }
+
+    public boolean isAspirationWindows() {
+        return this.aspirationWindows;
+    }
+
+    public void setAspirationWindows(boolean aspirationWindows) {
+        this.aspirationWindows = aspirationWindows;
+    }
+
+    @Override
+    public String toString() {
+        return "null move " + onOff(nullMovePruning) + ", late move reductions " + onOff(lateMoveReductions)
+            + ", futility " + onOff(futilityPruning) + ", aspiration windows " + onOff(aspirationWindows);
+    }
+
+    private static String onOff(boolean enabled) {
+        return enabled ? "on" : "off";
+    }
+}
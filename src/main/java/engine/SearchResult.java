@@ -0,0 +1,71 @@
+package engine;
+
+// Custom imports
+import bitboard.Move;
+
+public class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+    private final int[] principalVariation;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis, int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.principalVariation = principalVariation;
+    }
+
+    public int getBestMove() {
+        // Move.NONE when there was no legal move to play
+        return this.bestMove;
+    }
+
+    public int getScore() {
+        // Centipawns from the side to move's point of view
+        return this.score;
+    }
+
+    public int getDepth() {
+        // Last fully completed iteration
+        return this.depth;
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    public long getTimeMillis() {
+        return this.timeMillis;
+    }
+
+    public long getNodesPerSecond() {
+        return timeMillis == 0 ? nodes * 1000 : nodes * 1000 / timeMillis;
+    }
+
+    public int[] getPrincipalVariation() {
+        return this.principalVariation;
+    }
+
+    public boolean isMateScore() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    @Override
+    public String toString() {
+        // Summary line in the spirit of a UCI "info" line
+        StringBuilder pv = new StringBuilder();
+        for (int move : principalVariation) {
+            pv.append(' ').append(Move.toString(move));
+        }
+        String scoreText = isMateScore()
+            ? "mate " + Search.mateDistance(score)
+            : "cp " + score;
+        return "depth " + depth + " score " + scoreText + " nodes " + nodes + " time " + timeMillis
+            + " nps " + getNodesPerSecond() + " pv" + pv;
+    }
+}
@@ -0,0 +1,509 @@
+package engine;
+
+// Standard imports
+import java.util.Arrays;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.Position;
+
+import static bitboard.Bitboards.PAWN;
+import static bitboard.Bitboards.typeOf;
+import static engine.Search.INFINITY;
+import static engine.Search.MATE;
+import static engine.Search.MAX_PLY;
+
+class SearchWorker {
+    // How often (in nodes) the clock is consulted
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    // Safety margin for delta pruning in quiescence, in centipawns
+    private static final int DELTA_MARGIN = 200;
+
+    // History scores are halved once one passes this
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    // Selective search parameters (depths in plies, margins in centipawns)
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int FUTILITY_MAX_DEPTH = 2;
+    private static final int FUTILITY_MARGIN = 150;
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+    private static final int HISTORY_REDUCTION_DIVISOR = 4096;
+    private static final int ASPIRATION_MIN_DEPTH = 5;
+    private static final int ASPIRATION_WINDOW = 25;
+
+    // Late move reductions by depth and move number, growing with the log of both
+    private static final int[][] REDUCTIONS = new int[64][64];
+
+    static {
+        for (int depth = 1; depth < 64; depth++) {
+            for (int moves = 1; moves < 64; moves++) {
+                REDUCTIONS[depth][moves] = (int) (0.75 + Math.log(depth) * Math.log(moves) / 2.25);
+            }
+        }
+    }
+
+    private final Search search;
+    private final TranspositionTable transpositionTable;
+    private final PawnHashTable pawnTable;
+    private final int id;
+
+    // Which selective features are switched on, fixed for the whole search
+    private final boolean nullMovePruning;
+    private final boolean lateMoveReductions;
+    private final boolean futilityPruning;
+    private final boolean aspirationWindows;
+
+    // Thread-private state: the worker's own copy of the root position, which
+    // it plays moves on, and its principal variation table
+    private final Position position;
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+
+    // Network accumulators for the position, when a network is in use; like
+    // the position they belong to this worker alone
+    private final Accumulators accumulators;
+
+    // Endgame tables, shared read-only with the other workers, or null
+    private final Tablebase tablebase;
+
+    // Move ordering state, also private to the worker: a staged picker per ply,
+    // two killer moves per ply and history scores per (piece, target square)
+    private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][] history = new int[12][64];
+
+    // Node count, private to this worker's thread, and a copy published for
+    // other threads every few nodes (a volatile write at every node would cost
+    // more than the node itself)
+    private long nodes;
+    private volatile long publishedNodes;
+
+    SearchWorker(Search search, TranspositionTable transpositionTable, PawnHashTable pawnTable, int id, Position root) {
+        this.search = search;
+        SearchOptions options = search.getOptions();
+        this.nullMovePruning = options.isNullMovePruning();
+        this.lateMoveReductions = options.isLateMoveReductions();
+        this.futilityPruning = options.isFutilityPruning();
+        this.aspirationWindows = options.isAspirationWindows();
+        this.transpositionTable = transpositionTable;
+        this.pawnTable = pawnTable;
+        this.id = id;
+        this.position = new Position(root);
+        this.tablebase = search.getTablebase();
+        Network network = search.getNetwork();
+        this.accumulators = network == null ? null : new Accumulators(network);
+        if (accumulators != null) {
+            accumulators.refresh(position);
+        }
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            movePickers[ply] = new MovePicker();
+        }
+    }
+
+    SearchResult iterate(SearchLimits limits, long start, SearchResult fallback) {
+        // Iterative deepening. The main worker (id 0) reports each completed
+        // iteration; helpers only exist to fill the shared hash table. Odd helpers
+        // start a ply deeper so the threads spread over neighbouring depths
+        // instead of searching the same tree in lockstep
+        SearchResult result = fallback;
+        int previousScore = 0;
+        for (int depth = 1 + (id & 1); depth <= limits.getMaxDepth(); depth++) {
+            int score = aspirationSearch(depth, previousScore);
+            previousScore = score;
+            publishedNodes = nodes;
+            if (search.isStopped()) {
+                // Partial iteration, its result cannot be trusted
+                break;
+            }
+            if (id != 0) {
+                continue;
+            }
+
+            int[] pv = principalVariation(depth);
+            long elapsed = System.currentTimeMillis() - start;
+            result = new SearchResult(pv[0], score, depth, search.getNodes(), elapsed, pv);
+            search.report(result);
+
+            // Stop early on a forced mate, or when the next iteration is unlikely to finish in time
+            if (result.isMateScore() || (limits.hasTimeLimit() && elapsed * 2 > limits.getMoveTimeMillis())) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private int aspirationSearch(int depth, int previousScore) {
+        // Aspiration windows: from a few plies on, the score rarely moves far
+        // between iterations, so search a narrow window around the last one and
+        // widen it only on the side that fails. Mate scores get the full window
+        if (!aspirationWindows || depth < ASPIRATION_MIN_DEPTH || Math.abs(previousScore) >= MATE - MAX_PLY) {
+            return negamax(depth, -INFINITY, INFINITY, 0, true);
+        }
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(previousScore - delta, -INFINITY);
+        int beta = Math.min(previousScore + delta, INFINITY);
+        while (true) {
+            int score = negamax(depth, alpha, beta, 0, true);
+            if (search.isStopped()) {
+                return score;
+            }
+            delta *= 2;
+            if (score <= alpha) {
+                alpha = Math.max(score - delta, -INFINITY);
+            } else if (score >= beta) {
+                beta = Math.min(score + delta, INFINITY);
+            } else {
+                return score;
+            }
+        }
+    }
+
+    private int[] principalVariation(int depth) {
+        // The triangular table stops short wherever a hash cutoff ended the line
+        // (often one made by another thread), so carry on from there with the
+        // best moves stored in the table, keeping only those that are legal
+        int[] pv = Arrays.copyOf(pvTable[0], Math.max(pvLength[0], depth));
+        int length = 0;
+        while (length < pvLength[0]) {
+            position.makeMove(pv[length++]);
+        }
+        while (length < depth) {
+            long entry = transpositionTable.probe(position.getKey());
+            int move = entry == 0 ? Move.NONE : TranspositionTable.move(entry);
+            if (move == Move.NONE || !MoveGenerator.generateLegalMoves(position).contains(move)) {
+                break;
+            }
+            position.makeMove(move);
+            pv[length++] = move;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            position.unmakeMove(pv[i]);
+        }
+        return Arrays.copyOf(pv, length);
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply, boolean allowNull) {
+        // Alpha-beta search, scores are always from the side to move's point of view
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply);
+        }
+        pvLength[ply] = 0;
+        if ((++nodes & (CLOCK_CHECK_INTERVAL - 1)) == 0) {
+            publishedNodes = nodes;
+            search.checkClock();
+        }
+        if (search.isStopped()) {
+            return 0;
+        }
+
+        // Fifty-move rule and repetitions (a repeated position is scored as a
+        // draw straight away, since the side that could avoid it would have)
+        if (ply > 0 && (position.getHalfmoveClock() >= 100 || position.isRepetition())) {
+            return 0;
+        }
+
+        // An ending in the tables is known exactly, with mate scores counted
+        // from the root like any other. The root itself is searched, so that
+        // there is a move to play
+        if (ply > 0 && tablebase != null) {
+            int score = tablebase.probeScore(position, ply);
+            if (score != Tablebase.UNKNOWN) {
+                return score;
+            }
+        }
+
+        // A deep enough stored result for this position may settle it outright;
+        // otherwise its best move is still the best first guess. The table is
+        // shared with the other workers, so their results count here too
+        long key = position.getKey();
+        long entry = transpositionTable.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                    || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                    || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+
+        // Null-window nodes only need to prove a bound, which is what makes it
+        // safe to prune and reduce there; the principal variation is searched fully
+        boolean pvNode = beta - alpha > 1;
+        int us = position.getSideToMove();
+        boolean inCheck = position.isInCheck(us);
+        int staticEval = inCheck ? -INFINITY : evaluate();
+
+        // Null-move pruning: if passing the turn still leaves us at or above beta
+        // after a reduced search, a real move almost certainly would too. Not in
+        // check, not twice in a row, and not without pieces, where zugzwang is common
+        if (nullMovePruning && allowNull && !pvNode && !inCheck && depth >= NULL_MOVE_MIN_DEPTH
+            && staticEval >= beta && position.hasNonPawnMaterial(us)) {
+            int reduction = NULL_MOVE_REDUCTION + depth / 6;
+            position.makeNullMove();
+            int score = -negamax(depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+            position.unmakeNullMove();
+            if (search.isStopped()) {
+                return 0;
+            }
+            if (score >= beta) {
+                // A mate found by passing is not a real mate
+                return score >= MATE - MAX_PLY ? beta : score;
+            }
+        }
+
+        // Futility pruning: close to the leaves, a quiet move is unlikely to make up
+        // a static deficit this far below alpha, so such moves are skipped
+        boolean futile = futilityPruning && !pvNode && !inCheck && depth <= FUTILITY_MAX_DEPTH
+            && Math.abs(alpha) < MATE - MAX_PLY && staticEval + FUTILITY_MARGIN * depth <= alpha;
+
+        // Moves come from the picker best guess first: hash move, captures,
+        // killers, then quiet moves by history
+        MovePicker picker = movePickers[ply];
+        picker.init(position, hashMove, killers[ply], history);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        int movesSearched = 0;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            boolean quiet = !Move.isCapture(move) && !Move.isPromotion(move);
+            int historyScore = quiet ? history[position.getPiece(Move.from(move))][Move.to(move)] : 0;
+            makeMove(move);
+            boolean givesCheck = position.isInCheck(us ^ 1);
+            if (futile && quiet && !givesCheck && movesSearched > 0) {
+                unmakeMove(move);
+                continue;
+            }
+
+            // Principal variation search: the first move gets the full window, the
+            // rest a null window to show they are no better, re-searched if they are
+            int score;
+            if (movesSearched == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+            } else {
+                // Late move reductions: quiet moves this far down the ordering rarely
+                // turn out best, so search them shallower first (less so when their
+                // history is good) and only go to full depth if they beat alpha
+                int reduction = 0;
+                if (lateMoveReductions && quiet && depth >= LMR_MIN_DEPTH && movesSearched >= LMR_MIN_MOVES
+                    && !inCheck && !givesCheck && move != killers[ply][0] && move != killers[ply][1]) {
+                    reduction = REDUCTIONS[Math.min(depth, 63)][Math.min(movesSearched, 63)];
+                    reduction -= historyScore / HISTORY_REDUCTION_DIVISOR;
+                    if (pvNode) {
+                        reduction--;
+                    }
+                    reduction = Math.max(0, Math.min(reduction, depth - 2));
+                }
+                score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, true);
+                if (score > alpha && reduction > 0) {
+                    score = -negamax(depth - 1, -alpha - 1, -alpha, ply + 1, true);
+                }
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1, true);
+                }
+            }
+            unmakeMove(move);
+            movesSearched++;
+            if (search.isStopped()) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    // New best move: extend the principal variation with the child's line
+                    alpha = score;
+                    pvTable[ply][0] = move;
+                    System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        // Opponent will avoid this line
+                        if (quiet) {
+                            rememberQuietCutoff(move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if (bestMove == Move.NONE) {
+            return noMovesScore(ply);
+        }
+
+        // Remember the result along with what kind of bound it is
+        int bound = bestScore >= beta ? TranspositionTable.BOUND_LOWER
+                  : bestScore > originalAlpha ? TranspositionTable.BOUND_EXACT
+                  : TranspositionTable.BOUND_UPPER;
+        transpositionTable.store(key, bestMove, scoreToTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        // Play out captures and promotions from a leaf before trusting the static
+        // evaluation, so a position in the middle of an exchange is not scored as
+        // if the exchange were over. The side to move may also "stand pat" on the
+        // evaluation, since it is never forced to capture
+        pvLength[ply] = 0;
+        if ((++nodes & (CLOCK_CHECK_INTERVAL - 1)) == 0) {
+            publishedNodes = nodes;
+            search.checkClock();
+        }
+        if (search.isStopped()) {
+            return 0;
+        }
+        if (ply > 0 && (position.getHalfmoveClock() >= 100 || position.isRepetition())) {
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+
+        // In check there is no standing pat: every evasion is searched
+        boolean inCheck = position.isInCheck(position.getSideToMove());
+        MovePicker picker = movePickers[ply];
+        int standPat = -INFINITY;
+        if (inCheck) {
+            picker.init(position, Move.NONE, killers[ply], history);
+        } else {
+            standPat = evaluate();
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            picker.initQuiescence(position, history);
+        }
+
+        int bestScore = standPat;
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            // Delta pruning: skip a capture that could not bring the score up to
+            // alpha even if the captured piece were won outright
+            if (!inCheck && standPat + materialGain(move) + DELTA_MARGIN <= alpha) {
+                continue;
+            }
+            makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            unmakeMove(move);
+            if (search.isStopped()) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    pvTable[ply][0] = move;
+                    System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && bestScore == -INFINITY) {
+            // No evasion: checkmate
+            return -MATE + ply;
+        }
+        return bestScore;
+    }
+
+    private void makeMove(int move) {
+        // The accumulators must see the board before the move is made
+        if (accumulators != null) {
+            accumulators.push(position, move);
+        }
+        position.makeMove(move);
+    }
+
+    private void unmakeMove(int move) {
+        position.unmakeMove(move);
+        if (accumulators != null) {
+            accumulators.pop();
+        }
+    }
+
+    private int evaluate() {
+        // A null move changes no inputs, only whose perspective comes first
+        return accumulators != null ? accumulators.evaluate(position.getSideToMove()) : Evaluation.evaluate(position, pawnTable);
+    }
+
+    private int materialGain(int move) {
+        // Material a capture or promotion wins if it is not answered
+        int gain = 0;
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            gain = Evaluation.PIECE_VALUES[PAWN];
+        } else if (Move.isCapture(move)) {
+            gain = Evaluation.PIECE_VALUES[typeOf(position.getPiece(Move.to(move)))];
+        }
+        if (Move.isPromotion(move)) {
+            gain += Evaluation.PIECE_VALUES[Move.promotionType(move)] - Evaluation.PIECE_VALUES[PAWN];
+        }
+        return gain;
+    }
+
+    private int noMovesScore(int ply) {
+        // Checkmate (the sooner the better for the winner) or stalemate
+        return position.isInCheck(position.getSideToMove()) ? -MATE + ply : 0;
+    }
+
+    private void rememberQuietCutoff(int move, int depth, int ply) {
+        // A quiet move that refuted this node becomes a killer for its ply (kept
+        // for sibling nodes) and earns history, weighted towards deeper cutoffs
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] scores = history[position.getPiece(Move.from(move))];
+        scores[Move.to(move)] += depth * depth;
+        if (scores[Move.to(move)] > HISTORY_LIMIT) {
+            // Halve everything to keep the scores bounded and favour recent results
+            for (int[] pieceScores : history) {
+                for (int square = 0; square < 64; square++) {
+                    pieceScores[square] /= 2;
+                }
+            }
+        }
+    }
+
+    private static int scoreToTable(int score, int ply) {
+        // Mate scores are stored relative to this node rather than the root,
+        // so they stay correct when the position is reached at another ply
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    long getNodes() {
+        return this.publishedNodes;
+    }
+}
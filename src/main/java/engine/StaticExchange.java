@@ -0,0 +1,89 @@
+package engine;
+
+// Custom imports
+import bitboard.Attacks;
+import bitboard.Move;
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+final class StaticExchange {
+    // Exchange values by piece type; the king can take last but never be taken
+    private static final int[] VALUES = {100, 320, 330, 500, 900, 20000};
+
+    private StaticExchange() {
+    }
+
+    static boolean isAtLeast(Position position, int move, int threshold) {
+        // Whether the sequence of captures on the target square, each side always
+        // recapturing with its least valuable attacker and free to stop when it
+        // pays to, wins at least the threshold for the side making the move.
+        // Works purely on bitboards: removing each capturer from the occupancy
+        // reveals any slider lined up behind it (x-rays) without a rescan
+        if (Move.isCastle(move)) {
+            return threshold <= 0;
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        boolean enPassant = Move.flags(move) == Move.EN_PASSANT;
+        int victim = position.getPiece(to);
+
+        // What we gain by the capture, and what we stand to lose if it is answered
+        int swap = (enPassant ? VALUES[PAWN] : victim == EMPTY ? 0 : VALUES[typeOf(victim)]) - threshold;
+        if (swap < 0) {
+            return false;
+        }
+        swap = VALUES[typeOf(position.getPiece(from))] - swap;
+        if (swap <= 0) {
+            return true;
+        }
+
+        long occupancy = position.getOccupancy() ^ (1L << from) ^ (1L << to);
+        if (enPassant) {
+            occupancy ^= 1L << (to + (position.getSideToMove() == WHITE ? -8 : 8));
+        }
+        long bishops = position.getPieces(WHITE, BISHOP) | position.getPieces(BLACK, BISHOP)
+                     | position.getPieces(WHITE, QUEEN) | position.getPieces(BLACK, QUEEN);
+        long rooks = position.getPieces(WHITE, ROOK) | position.getPieces(BLACK, ROOK)
+                   | position.getPieces(WHITE, QUEEN) | position.getPieces(BLACK, QUEEN);
+        long attackers = position.attackersTo(to, occupancy);
+        int side = position.getSideToMove();
+        int result = 1;
+
+        while (true) {
+            // The other side recaptures, if it still has an attacker on the board
+            side ^= 1;
+            attackers &= occupancy;
+            long sideAttackers = attackers & position.getColourOccupancy(side);
+            if (sideAttackers == 0) {
+                break;
+            }
+            result ^= 1;
+
+            // Find the least valuable attacker; stop as soon as the side that just
+            // captured can keep its gain whatever the other side does next
+            int type = PAWN;
+            long candidates = sideAttackers & position.getPieces(side, PAWN);
+            while (candidates == 0 && type < KING) {
+                type++;
+                candidates = sideAttackers & position.getPieces(side, type);
+            }
+            if (type == KING) {
+                // The king may only take if nothing can take it back
+                return ((attackers & ~position.getColourOccupancy(side)) != 0) ? result == 0 : result == 1;
+            }
+            swap = VALUES[type] - swap;
+            if (swap < result) {
+                break;
+            }
+            occupancy ^= Long.lowestOneBit(candidates);
+            if (type == PAWN || type == BISHOP || type == QUEEN) {
+                attackers |= Attacks.bishopAttacks(to, occupancy) & bishops;
+            }
+            if (type == ROOK || type == QUEEN) {
+                attackers |= Attacks.rookAttacks(to, occupancy) & rooks;
+            }
+        }
+        return result == 1;
+    }
+}
@@ -0,0 +1,272 @@
+package engine;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Custom imports
+import bitboard.Attacks;
+import bitboard.Position;
+
+import static bitboard.Bitboards.*;
+
+public class Tablebase {
+    // Endgame tables made by TablebaseGenerator, one file per ending, each
+    // memory-mapped and read in place: a probe works out the position's index
+    // and reads one byte, without copying or allocating anything.
+    //
+    // File layout, big-endian:
+    //   int    magic ("ETB1")
+    //   byte   the ending's pieces in slot order, 0xFF for unused slots (4)
+    //   int    entries per side to move
+    //   int    reserved
+    //   byte   entries with the stronger side (white) to move, then black
+    //
+    // An entry is 0 for a draw, 255 for an index that is not a legal
+    // position, and otherwise 1 + the plies to mate with best play: odd plies
+    // for a win for the side to move, even for a loss.
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final int WIN = 1;
+    public static final int DRAW = 0;
+    public static final int LOSS = -1;
+
+    static final String EXTENSION = ".tb";
+    static final int MAGIC = 0x45544231;
+    static final int HEADER_BYTES = 16;
+    static final int INVALID = 255;
+    static final int MAX_PLIES = 253;
+
+    // Tables by material: each count of white and black queens, rooks,
+    // bishops, knights and pawns (at most two in all) as a base-3 digit
+    private static final int MATERIAL_KEYS = 59049;
+    private static final int[] POWERS_OF_3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683};
+
+    private final Endgame[] endgames = new Endgame[MATERIAL_KEYS];
+    private final ByteBuffer[] tables = new ByteBuffer[MATERIAL_KEYS];
+    private final boolean[] swapped = new boolean[MATERIAL_KEYS];
+    private int tableCount;
+    private int maxPieces = 2;
+
+    private Tablebase() {
+    }
+
+    public static Tablebase open(Path directory) throws IOException {
+        // Every table in the directory; a missing directory is an empty tablebase
+        Tablebase tablebase = new Tablebase();
+        if (!Files.isDirectory(directory)) {
+            return tablebase;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                tablebase.add(Endgame.of(name.substring(0, name.length() - EXTENSION.length())), file);
+            }
+        }
+        return tablebase;
+    }
+
+    private void add(Endgame endgame, Path file) throws IOException {
+        MappedByteBuffer table;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_BYTES + 2L * endgame.getSize()) {
+                throw new IOException("Wrong size for " + endgame + ": " + file);
+            }
+            table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        boolean matches = table.getInt(0) == MAGIC && table.getInt(8) == endgame.getSize();
+        for (int slot = 0; slot < Endgame.MAX_PIECES; slot++) {
+            int piece = slot < endgame.getPieceCount() ? endgame.getPiece(slot) : 0xFF;
+            matches &= (table.get(4 + slot) & 0xFF) == piece;
+        }
+        if (!matches) {
+            throw new IOException("Not a table for " + endgame + ": " + file);
+        }
+
+        // Registered for both colourings of the material
+        int[] counts = new int[12];
+        for (int slot = 2; slot < endgame.getPieceCount(); slot++) {
+            counts[endgame.getPiece(slot)]++;
+        }
+        int[] turned = new int[12];
+        for (int piece = 0; piece < 12; piece++) {
+            turned[pieceCode(colourOf(piece) ^ 1, typeOf(piece))] = counts[piece];
+        }
+        for (int turn = 0; turn < 2; turn++) {
+            int key = materialKey(turn == 0 ? counts : turned);
+            if (turn == 1 && key == materialKey(counts)) {
+                break;
+            }
+            endgames[key] = endgame;
+            tables[key] = table;
+            swapped[key] = turn == 1;
+        }
+        tableCount++;
+        maxPieces = Math.max(maxPieces, endgame.getPieceCount());
+    }
+
+    public int getTableCount() {
+        return this.tableCount;
+    }
+
+    public int getMaxPieces() {
+        // Positions with more pieces than this are never in the tables
+        return this.maxPieces;
+    }
+
+    public boolean contains(Endgame endgame) {
+        int[] counts = new int[12];
+        for (int slot = 2; slot < endgame.getPieceCount(); slot++) {
+            counts[endgame.getPiece(slot)]++;
+        }
+        return endgame.getPieceCount() == 2 || endgames[materialKey(counts)] != null;
+    }
+
+    public int probeResult(Position position) {
+        // WIN, DRAW or LOSS for the side to move, or UNKNOWN
+        int entry = lookup(position);
+        if (entry < 0 || entry == INVALID) {
+            return UNKNOWN;
+        }
+        return entry == 0 ? DRAW : (entry - 1) % 2 == 1 ? WIN : LOSS;
+    }
+
+    public int probeDistance(Position position) {
+        // Plies to mate with best play, whichever side mates, or -1 for a
+        // draw or a position not in the tables
+        int entry = lookup(position);
+        return entry <= 0 || entry == INVALID ? -1 : entry - 1;
+    }
+
+    public int probeScore(Position position, int ply) {
+        // A search score for a position ply moves from the root: a mate score
+        // counted from the root, 0 for a draw, or UNKNOWN. A mate further off
+        // than MAX_PLY is held at the edge of the mate range, so it is never
+        // taken for an ordinary score
+        int entry = lookup(position);
+        if (entry < 0 || entry == INVALID) {
+            return UNKNOWN;
+        }
+        if (entry == 0) {
+            return 0;
+        }
+        int plies = entry - 1;
+        int fromRoot = Math.min(ply + plies, Search.MAX_PLY - 1);
+        return plies % 2 == 1 ? Search.MATE - fromRoot : -Search.MATE + fromRoot;
+    }
+
+    int lookup(Position position) {
+        // The position's entry, or -1 if it is not covered. Castling rights and
+        // a capturable en passant pawn are not in the tables
+        long occupancy = position.getOccupancy();
+        int count = Long.bitCount(occupancy);
+        if (count > maxPieces || position.getCastlingRights() != 0) {
+            return -1;
+        }
+        int side = position.getSideToMove();
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant != NO_SQUARE && (Attacks.pawnAttacks(side ^ 1, enPassant) & position.getPieces(side, PAWN)) != 0) {
+            return -1;
+        }
+        if (count == 2) {
+            return 0;
+        }
+
+        int key = 0;
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            for (int type = PAWN; type <= QUEEN; type++) {
+                key += Long.bitCount(position.getPieces(colour, type)) * POWERS_OF_3[colour * 5 + type];
+            }
+        }
+        Endgame endgame = endgames[key];
+        if (endgame == null) {
+            return -1;
+        }
+
+        // Put each piece in its slot, turning the board over if black is the
+        // stronger side
+        boolean turn = swapped[key];
+        int used = 0;
+        int square0 = 0;
+        int square1 = 0;
+        int square2 = 0;
+        int square3 = 0;
+        while (occupancy != 0) {
+            int square = Long.numberOfTrailingZeros(occupancy);
+            occupancy &= occupancy - 1;
+            int piece = position.getPiece(square);
+            if (turn) {
+                piece = pieceCode(colourOf(piece) ^ 1, typeOf(piece));
+                square ^= 56;
+            }
+            int slot = endgame.freeSlot(piece, used);
+            used |= 1 << slot;
+            switch (slot) {
+                case 0 -> square0 = square;
+                case 1 -> square1 = square;
+                case 2 -> square2 = square;
+                default -> square3 = square;
+            }
+        }
+        return entry(key, endgame.index(square0, square1, square2, square3), turn ? side ^ 1 : side);
+    }
+
+    int lookup(int[] pieces, int[] squares, int count, int side) {
+        // As above for pieces and squares given directly, as the generator
+        // has them after a capture or promotion
+        if (count == 2) {
+            return 0;
+        }
+        int key = 0;
+        for (int i = 0; i < count; i++) {
+            if (typeOf(pieces[i]) != KING) {
+                key += POWERS_OF_3[colourOf(pieces[i]) * 5 + typeOf(pieces[i])];
+            }
+        }
+        Endgame endgame = endgames[key];
+        if (endgame == null) {
+            return -1;
+        }
+        boolean turn = swapped[key];
+        int used = 0;
+        int square0 = 0;
+        int square1 = 0;
+        int square2 = 0;
+        int square3 = 0;
+        for (int i = 0; i < count; i++) {
+            int piece = turn ? pieceCode(colourOf(pieces[i]) ^ 1, typeOf(pieces[i])) : pieces[i];
+            int square = turn ? squares[i] ^ 56 : squares[i];
+            int slot = endgame.freeSlot(piece, used);
+            used |= 1 << slot;
+            switch (slot) {
+                case 0 -> square0 = square;
+                case 1 -> square1 = square;
+                case 2 -> square2 = square;
+                default -> square3 = square;
+            }
+        }
+        return entry(key, endgame.index(square0, square1, square2, square3), turn ? side ^ 1 : side);
+    }
+
+    private int entry(int key, int index, int side) {
+        if (index < 0) {
+            return -1;
+        }
+        return tables[key].get(HEADER_BYTES + side * endgames[key].getSize() + index) & 0xFF;
+    }
+
+    private static int materialKey(int[] counts) {
+        int key = 0;
+        for (int colour = WHITE; colour <= BLACK; colour++) {
+            for (int type = PAWN; type <= QUEEN; type++) {
+                key += counts[pieceCode(colour, type)] * POWERS_OF_3[colour * 5 + type];
+            }
+        }
+        return key;
+    }
+}
@@ -0,0 +1,524 @@
+package engine;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Custom imports
+import bitboard.Attacks;
+
+import static bitboard.Bitboards.*;
+
+public class TablebaseGenerator {
+    // Builds one ending's table by retrograde analysis. Every position is
+    // first checked for mate, and for captures and promotions, whose results
+    // are read from the smaller tables already made. Then pass k settles the
+    // positions that are won or lost in exactly k plies: a win if some move
+    // leads to a loss in k - 1, a loss if every move leads to a win and the
+    // longest is k - 1. Only positions that could have changed are looked at
+    // in each pass: those a newly settled position can be reached from by
+    // taking back a move, and those whose captures or promotions settle them
+    // now. Whatever is left at the end is a draw.
+    //
+    // Positions are in table terms throughout: the stronger side is white,
+    // and pieces are in the ending's slots, white king first.
+    private final Endgame endgame;
+    private final Tablebase subtables;
+    private final int count;
+    private final int size;
+    private final int[] pieces;
+
+    // Entries in the table format (0 unsettled or drawn, 255 not a legal
+    // position, else 1 + plies to mate) for each side to move, and the pass
+    // at which each position's captures and promotions may settle it
+    private final byte[][] values = new byte[2][];
+    private final byte[][] winPasses = new byte[2][];
+    private final byte[][] lossPasses = new byte[2][];
+    private int lastScheduledPass;
+
+    // Positions to look at in this pass and the next, as bitsets over both
+    // sides to move (black to move after all of white's)
+    private long[] candidates;
+    private long[] nextCandidates;
+
+    // What the moves of the position being looked at lead to, from the
+    // opponent's point of view: shortest loss and longest win among settled
+    // results, whether any move leads anywhere else, and the same two for
+    // the results of captures and promotions alone
+    private int moveCount;
+    private int shortestLoss;
+    private int longestWin;
+    private boolean anyOther;
+    private int fixedShortestLoss;
+    private int fixedLongestWin;
+
+    // Scratch: the position being looked at, and a position after a move
+    private final int[] squares = new int[Endgame.MAX_PIECES];
+    private final int[] movedSquares = new int[Endgame.MAX_PIECES];
+    private final int[] movedPieces = new int[Endgame.MAX_PIECES];
+    private final int[] enPassantSquares = new int[Endgame.MAX_PIECES];
+    private final int[] enPassantPieces = new int[Endgame.MAX_PIECES];
+
+    private int passes;
+    private int longestMate;
+    private final long[] results = new long[3];
+
+    public TablebaseGenerator(Endgame endgame, Tablebase subtables) {
+        this.endgame = endgame;
+        this.subtables = subtables;
+        this.count = endgame.getPieceCount();
+        this.size = endgame.getSize();
+        this.pieces = new int[count];
+        for (int slot = 0; slot < count; slot++) {
+            pieces[slot] = endgame.getPiece(slot);
+        }
+    }
+
+    public void generate() {
+        for (int side = WHITE; side <= BLACK; side++) {
+            values[side] = new byte[size];
+            winPasses[side] = new byte[size];
+            lossPasses[side] = new byte[size];
+        }
+        candidates = new long[(2 * size + 63) / 64];
+        nextCandidates = new long[candidates.length];
+
+        // Legality, mates, and when captures and promotions come into play
+        for (int side = WHITE; side <= BLACK; side++) {
+            for (int index = 0; index < size; index++) {
+                initialise(side, index);
+            }
+        }
+        for (int side = WHITE; side <= BLACK; side++) {
+            for (int index = 0; index < size; index++) {
+                if ((values[side][index] & 0xFF) == 1) {
+                    markPredecessors(side, index);
+                }
+            }
+        }
+
+        // Settle wins and losses in order of length
+        for (int pass = 1; ; pass++) {
+            long[] swap = candidates;
+            candidates = nextCandidates;
+            nextCandidates = swap;
+            Arrays.fill(nextCandidates, 0L);
+            if (pass <= lastScheduledPass) {
+                for (int side = WHITE; side <= BLACK; side++) {
+                    for (int index = 0; index < size; index++) {
+                        if ((winPasses[side][index] & 0xFF) == pass || (lossPasses[side][index] & 0xFF) == pass) {
+                            candidates[(side * size + index) >>> 6] |= 1L << (side * size + index);
+                        }
+                    }
+                }
+            }
+
+            boolean any = false;
+            for (int word = 0; word < candidates.length; word++) {
+                for (long bits = candidates[word]; bits != 0; bits &= bits - 1) {
+                    int node = word * 64 + Long.numberOfTrailingZeros(bits);
+                    int side = node < size ? WHITE : BLACK;
+                    int index = node - side * size;
+                    if (values[side][index] == 0 && settle(side, index, pass)) {
+                        any = true;
+                        markPredecessors(side, index);
+                    }
+                }
+            }
+            if (!any && pass > lastScheduledPass && isEmpty(nextCandidates)) {
+                passes = pass;
+                break;
+            }
+            if (pass > Tablebase.MAX_PLIES) {
+                throw new IllegalStateException(endgame + " has mates too long for the table format");
+            }
+        }
+
+        for (int side = WHITE; side <= BLACK; side++) {
+            for (int index = 0; index < size; index++) {
+                int entry = values[side][index] & 0xFF;
+                if (entry != Tablebase.INVALID) {
+                    results[entry == 0 ? 1 : (entry - 1) % 2 == 1 ? 0 : 2]++;
+                    longestMate = Math.max(longestMate, entry == 0 ? 0 : entry - 1);
+                }
+            }
+            winPasses[side] = null;
+            lossPasses[side] = null;
+        }
+        candidates = null;
+        nextCandidates = null;
+    }
+
+    public void write(Path file) throws IOException {
+        // Written to a temporary file first, so that a table is never seen half
+        // written by a tablebase opened on the same directory
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+            header.putInt(Tablebase.MAGIC);
+            for (int slot = 0; slot < Endgame.MAX_PIECES; slot++) {
+                header.put((byte) (slot < count ? pieces[slot] : 0xFF));
+            }
+            header.putInt(size).putInt(0).flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(values[WHITE]));
+            writeFully(channel, ByteBuffer.wrap(values[BLACK]));
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public String getSummary() {
+        // Legal positions won, drawn and lost for the side to move
+        return String.format("%s: %d won, %d drawn, %d lost, longest mate %d plies, %d passes",
+                endgame, results[0], results[1], results[2], longestMate, passes);
+    }
+
+    private void initialise(int side, int index) {
+        endgame.decode(index, squares);
+        if (!isLegal(side, index)) {
+            values[side][index] = (byte) Tablebase.INVALID;
+            return;
+        }
+        scanMoves(side, 0);
+        if (moveCount == 0) {
+            // Mate, or stalemate (left as a draw)
+            if (isAttacked(squares[side], side ^ 1, squares, pieces, count, -1, occupancy(squares, count, -1))) {
+                values[side][index] = 1;
+            }
+            return;
+        }
+        if (fixedShortestLoss >= 0) {
+            schedule(winPasses[side], index, fixedShortestLoss + 1);
+        }
+        if (fixedLongestWin >= 0) {
+            schedule(lossPasses[side], index, fixedLongestWin + 1);
+        }
+    }
+
+    private void schedule(byte[] passes, int index, int pass) {
+        if (pass > Tablebase.MAX_PLIES) {
+            throw new IllegalStateException(endgame + " has mates too long for the table format");
+        }
+        passes[index] = (byte) pass;
+        lastScheduledPass = Math.max(lastScheduledPass, pass);
+    }
+
+    private boolean isLegal(int side, int index) {
+        // No two pieces on a square, the index the standard one for its
+        // position, and the side that has just moved not left in check
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (squares[i] == squares[j]) {
+                    return false;
+                }
+            }
+        }
+        if (endgame.index(squares) != index) {
+            return false;
+        }
+        return !isAttacked(squares[side ^ 1], side, squares, pieces, count, -1, occupancy(squares, count, -1));
+    }
+
+    private boolean settle(int side, int index, int pass) {
+        endgame.decode(index, squares);
+        scanMoves(side, pass);
+        if (shortestLoss == pass - 1) {
+            values[side][index] = (byte) (pass + 1);
+            return true;
+        }
+        if (moveCount > 0 && !anyOther && longestWin == pass - 1) {
+            values[side][index] = (byte) (pass + 1);
+            return true;
+        }
+        return false;
+    }
+
+    private void scanMoves(int side, int pass) {
+        // Every legal move of the side to move in the position in squares,
+        // noting what each leads to
+        moveCount = 0;
+        shortestLoss = Integer.MAX_VALUE;
+        longestWin = -1;
+        anyOther = false;
+        fixedShortestLoss = -1;
+        fixedLongestWin = -1;
+        long occupancy = occupancy(squares, count, -1);
+        long own = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (colourOf(pieces[slot]) == side) {
+                own |= 1L << squares[slot];
+            }
+        }
+
+        for (int slot = 0; slot < count; slot++) {
+            if (colourOf(pieces[slot]) != side) {
+                continue;
+            }
+            int from = squares[slot];
+            int type = typeOf(pieces[slot]);
+            if (type == PAWN) {
+                int forward = side == WHITE ? 8 : -8;
+                int to = from + forward;
+                if ((occupancy & (1L << to)) == 0) {
+                    pawnMove(side, slot, to, -1, pass);
+                    int startRank = side == WHITE ? 1 : 6;
+                    if (rank(from) == startRank && (occupancy & (1L << (to + forward))) == 0) {
+                        move(side, slot, to + forward, -1, EMPTY, pass, true);
+                    }
+                }
+                for (long targets = Attacks.pawnAttacks(side, from) & occupancy & ~own; targets != 0; targets &= targets - 1) {
+                    int target = Long.numberOfTrailingZeros(targets);
+                    pawnMove(side, slot, target, slotAt(target), pass);
+                }
+            } else {
+                for (long targets = attacks(type, from, occupancy) & ~own; targets != 0; targets &= targets - 1) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    move(side, slot, to, (occupancy & (1L << to)) != 0 ? slotAt(to) : -1, EMPTY, pass, false);
+                }
+            }
+        }
+    }
+
+    private void pawnMove(int side, int slot, int to, int captured, int pass) {
+        if (rank(to) == 0 || rank(to) == 7) {
+            for (int type = QUEEN; type >= KNIGHT; type--) {
+                move(side, slot, to, captured, pieceCode(side, type), pass, false);
+            }
+        } else {
+            move(side, slot, to, captured, EMPTY, pass, false);
+        }
+    }
+
+    private void move(int side, int slot, int to, int captured, int promotion, int pass, boolean doublePush) {
+        // Play the move if legal and record what it leads to. Quiet moves stay
+        // in this table; captures and promotions lead to another one
+        System.arraycopy(squares, 0, movedSquares, 0, count);
+        movedSquares[slot] = to;
+        long occupancy = occupancy(movedSquares, count, captured);
+        if (isAttacked(movedSquares[side], side ^ 1, movedSquares, pieces, count, captured, occupancy)) {
+            return;
+        }
+        moveCount++;
+
+        int entry;
+        boolean settled;
+        if (captured < 0 && promotion == EMPTY) {
+            entry = values[side ^ 1][endgame.index(movedSquares)] & 0xFF;
+            settled = entry != 0;
+            if (doublePush) {
+                // The opponent may be able to take en passant, which this
+                // table does not hold, so combine that with the table's entry
+                int enPassant = enPassantEntry(side, slot, to);
+                if (enPassant >= 0) {
+                    if (settled) {
+                        entry = better(entry, enPassant);
+                    } else if (enPassant != 0 && (enPassant - 1) % 2 == 1 && enPassant - 1 < pass) {
+                        // A win by taking en passant faster than anything the
+                        // unsettled entry could still turn out to be
+                        entry = enPassant;
+                        settled = true;
+                    }
+                    if (enPassant != 0 && (enPassant - 1) % 2 == 1) {
+                        fixedLongestWin = Math.max(fixedLongestWin, enPassant - 1);
+                    }
+                }
+            }
+        } else {
+            int remaining = 0;
+            for (int i = 0; i < count; i++) {
+                if (i != captured) {
+                    movedPieces[remaining] = i == slot && promotion != EMPTY ? promotion : pieces[i];
+                    movedSquares[remaining] = movedSquares[i];
+                    remaining++;
+                }
+            }
+            entry = subtables.lookup(movedPieces, movedSquares, remaining, side ^ 1);
+            if (entry < 0) {
+                throw new IllegalStateException(endgame + " needs the table for " + material(movedPieces, remaining));
+            }
+            settled = true;
+            if (entry != 0 && (entry - 1) % 2 == 0) {
+                fixedShortestLoss = fixedShortestLoss < 0 ? entry - 1 : Math.min(fixedShortestLoss, entry - 1);
+            } else if (entry != 0) {
+                fixedLongestWin = Math.max(fixedLongestWin, entry - 1);
+            }
+        }
+
+        // The entry is from the opponent's point of view
+        if (!settled || entry == 0) {
+            anyOther = true;
+        } else if ((entry - 1) % 2 == 0) {
+            shortestLoss = Math.min(shortestLoss, entry - 1);
+            anyOther = true;
+        } else {
+            longestWin = Math.max(longestWin, entry - 1);
+        }
+    }
+
+    private int enPassantEntry(int side, int slot, int to) {
+        // After a double push to this square: the opponent's best result from
+        // taking en passant, as an entry, or -1 if no capture is possible
+        int opponent = side ^ 1;
+        int over = to - (side == WHITE ? 8 : -8);
+        int best = -1;
+        for (int taker = 0; taker < count; taker++) {
+            if (pieces[taker] != pieceCode(opponent, PAWN) || (Attacks.pawnAttacks(opponent, squares[taker]) & (1L << over)) == 0) {
+                continue;
+            }
+
+            // The capture, which must not leave the taker's own king in check
+            System.arraycopy(squares, 0, enPassantSquares, 0, count);
+            enPassantSquares[slot] = to;
+            enPassantSquares[taker] = over;
+            long occupancy = occupancy(enPassantSquares, count, slot);
+            if (isAttacked(enPassantSquares[opponent], side, enPassantSquares, pieces, count, slot, occupancy)) {
+                continue;
+            }
+            int remaining = 0;
+            for (int i = 0; i < count; i++) {
+                if (i != slot) {
+                    enPassantPieces[remaining] = pieces[i];
+                    enPassantSquares[remaining] = enPassantSquares[i];
+                    remaining++;
+                }
+            }
+            int entry = subtables.lookup(enPassantPieces, enPassantSquares, remaining, side);
+            if (entry < 0) {
+                throw new IllegalStateException(endgame + " needs the table for " + material(enPassantPieces, remaining));
+            }
+
+            // One ply further from mate, seen from the side that took
+            int taken = entry == 0 ? 0 : entry + 1;
+            best = best < 0 ? taken : better(best, taken);
+        }
+        return best;
+    }
+
+    private static int better(int entry, int other) {
+        // The better of two entries for the side to move: the quickest win,
+        // then a draw, then the slowest loss
+        return preference(entry) >= preference(other) ? entry : other;
+    }
+
+    private static int preference(int entry) {
+        if (entry == 0) {
+            return 0;
+        }
+        int plies = entry - 1;
+        return plies % 2 == 1 ? 1000 - plies : -1000 + plies;
+    }
+
+    private void markPredecessors(int side, int index) {
+        // Positions with the other side to move that lead here by a quiet move:
+        // take back each of its pieces' moves to an empty square
+        endgame.decode(index, squares);
+        int mover = side ^ 1;
+        long occupancy = occupancy(squares, count, -1);
+        for (int slot = 0; slot < count; slot++) {
+            if (colourOf(pieces[slot]) != mover) {
+                continue;
+            }
+            int square = squares[slot];
+            int type = typeOf(pieces[slot]);
+            if (type == PAWN) {
+                int back = mover == WHITE ? -8 : 8;
+                int from = square + back;
+                if (rank(from) >= 1 && rank(from) <= 6 && (occupancy & (1L << from)) == 0) {
+                    markPredecessor(mover, slot, from);
+                    int doubleRank = mover == WHITE ? 3 : 4;
+                    if (rank(square) == doubleRank && (occupancy & (1L << (from + back))) == 0) {
+                        markPredecessor(mover, slot, from + back);
+                    }
+                }
+            } else {
+                for (long origins = attacks(type, square, occupancy) & ~occupancy; origins != 0; origins &= origins - 1) {
+                    markPredecessor(mover, slot, Long.numberOfTrailingZeros(origins));
+                }
+            }
+        }
+    }
+
+    private void markPredecessor(int mover, int slot, int from) {
+        System.arraycopy(squares, 0, movedSquares, 0, count);
+        movedSquares[slot] = from;
+        int index = endgame.index(movedSquares);
+        if (index >= 0 && values[mover][index] == 0) {
+            int node = mover * size + index;
+            nextCandidates[node >>> 6] |= 1L << node;
+        }
+    }
+
+    private int slotAt(int square) {
+        for (int slot = 0; slot < count; slot++) {
+            if (squares[slot] == square) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static long occupancy(int[] squares, int count, int skip) {
+        long occupancy = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (slot != skip) {
+                occupancy |= 1L << squares[slot];
+            }
+        }
+        return occupancy;
+    }
+
+    private static boolean isAttacked(int square, int byColour, int[] squares, int[] pieces, int count, int skip, long occupancy) {
+        for (int slot = 0; slot < count; slot++) {
+            if (slot == skip || colourOf(pieces[slot]) != byColour) {
+                continue;
+            }
+            int type = typeOf(pieces[slot]);
+            long attacks = type == PAWN ? Attacks.pawnAttacks(byColour, squares[slot]) : attacks(type, squares[slot], occupancy);
+            if ((attacks & (1L << square)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long attacks(int type, int square, long occupancy) {
+        return switch (type) {
+            case KNIGHT -> Attacks.knightAttacks(square);
+            case BISHOP -> Attacks.bishopAttacks(square, occupancy);
+            case ROOK -> Attacks.rookAttacks(square, occupancy);
+            case QUEEN -> Attacks.queenAttacks(square, occupancy);
+            default -> Attacks.kingAttacks(square);
+        };
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String material(int[] pieces, int count) {
+        StringBuilder white = new StringBuilder();
+        StringBuilder black = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            (colourOf(pieces[i]) == WHITE ? white : black).append(Endgame.PIECE_LETTERS.charAt(typeOf(pieces[i])));
+        }
+        return white + "v" + black;
+    }
+}
@@ -0,0 +1,106 @@
+package engine;
+
+public class TranspositionTable {
+    // Bound types: what the stored score says about the true score
+    public static final int BOUND_UPPER = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_EXACT = 3;
+
+    // Each entry is two longs: (key XOR data) followed by data. A reader
+    // accepts an entry only if the two XOR back to its key, so an entry torn
+    // by two threads writing at once is simply seen as a miss - no locks needed.
+    // Entries come in buckets of two: the first slot keeps the deepest
+    // result, the second always takes the newest.
+    private static final int LONGS_PER_BUCKET = 4;
+
+    // Data layout: move (16 bits) | score (16) | depth (8) | bound (2) | generation (6)
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int GENERATION_SHIFT = 42;
+
+    private final long[] table;
+    private final int bucketMask;
+    private int generation;
+
+    public TranspositionTable(int sizeMb) {
+        // Round the bucket count down to a power of two so the key can be masked
+        long buckets = Math.max(1, (long) sizeMb * 1024 * 1024 / (LONGS_PER_BUCKET * Long.BYTES));
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, 1 << 26));
+        this.table = new long[bucketCount * LONGS_PER_BUCKET];
+        this.bucketMask = bucketCount - 1;
+    }
+
+    public void newSearch() {
+        // Entries from earlier searches become preferred victims for replacement
+        generation = (generation + 1) & 63;
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+    }
+
+    public long probe(long key) {
+        // Returns the entry's data, or 0 on a miss (stored data is never 0,
+        // because every stored entry has a non-zero bound)
+        int index = bucketIndex(key);
+        for (int slot = index; slot < index + LONGS_PER_BUCKET; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        long data = (move & 0xFFFFL)
+            | ((score & 0xFFFFL) << SCORE_SHIFT)
+            | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) generation << GENERATION_SHIFT);
+
+        // Depth-preferred slot: replace it if it holds this position, a stale
+        // entry from an earlier search, or a shallower result
+        int index = bucketIndex(key);
+        long oldData = table[index + 1];
+        boolean samePosition = (table[index] ^ oldData) == key;
+        if (samePosition || generation(oldData) != generation || depth >= depth(oldData)) {
+            if (samePosition && move == 0) {
+                // Keep the known best move when the new result has none
+                data |= oldData & 0xFFFFL;
+            }
+            table[index] = key ^ data;
+            table[index + 1] = data;
+            return;
+        }
+
+        // Otherwise the always-replace slot takes it
+        table[index + 2] = key ^ data;
+        table[index + 3] = data;
+    }
+
+    private int bucketIndex(long key) {
+        return (int) (key & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> GENERATION_SHIFT) & 63);
+    }
+}
@@ -0,0 +1,75 @@
+package engine;
+
+// Standard imports
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernels implements NetworkKernels {
+    // The widest shapes the CPU supports (16 shorts on AVX2); products are
+    // widened to ints of the same total width, so one short vector becomes
+    // two int vectors
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(short[] accumulator, short[] weights, int offset) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(accumulator.length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                .add(ShortVector.fromArray(SHORTS, weights, offset + i))
+                .intoArray(accumulator, i);
+        }
+        for (; i < accumulator.length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(short[] accumulator, short[] weights, int offset) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(accumulator.length); i < bound; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, i)
+                .sub(ShortVector.fromArray(SHORTS, weights, offset + i))
+                .intoArray(accumulator, i);
+        }
+        for (; i < accumulator.length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public int output(short[] us, short[] them, short[] weights) {
+        int n = us.length;
+        IntVector sums = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(n); i < bound; i += SHORTS.length()) {
+            sums = sums.add(dot(ShortVector.fromArray(SHORTS, us, i), ShortVector.fromArray(SHORTS, weights, i)));
+            sums = sums.add(dot(ShortVector.fromArray(SHORTS, them, i), ShortVector.fromArray(SHORTS, weights, n + i)));
+        }
+        int sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            sum += ScalarKernels.clamp(us[i]) * weights[i] + ScalarKernels.clamp(them[i]) * weights[n + i];
+        }
+        return sum;
+    }
+
+    private static IntVector dot(ShortVector activations, ShortVector weights) {
+        // Clipped ReLU in shorts, then widen both halves to ints before
+        // multiplying, since a 255 * weight product does not fit in a short
+        ShortVector clipped = activations.max((short) 0).min((short) Network.QA);
+        IntVector sum = IntVector.zero(INTS);
+        for (int part = 0; part < 2; part++) {
+            IntVector a = (IntVector) clipped.convertShape(VectorOperators.S2I, INTS, part);
+            IntVector w = (IntVector) weights.convertShape(VectorOperators.S2I, INTS, part);
+            sum = sum.add(a.mul(w));
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SHORTS.vectorBitSize() + "-bit)";
+    }
+}
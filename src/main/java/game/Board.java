@@ -1,5 +1,8 @@
 package game;
 
+// Standard imports
+import java.util.Arrays;
+
 // Custom imports
 import pieces.Piece;
 import pieces.PieceColour;
@@ -10,22 +13,72 @@ import pieces.Knight;
 import pieces.Pawn;
 import pieces.Queen;
 import pieces.Rook;
+import bitboard.Bitboards;
+import bitboard.Fen;
+import bitboard.Position;
+import engine.Evaluation;
 
 public class Board {
     private Piece[][] board;
+    private Position position;
+
+    // Whether the piece objects still have to be created from the bitboards;
+    // a board loaded from a FEN only builds them once something looks at them
+    private boolean gridPending;
+
+    // Moves played on this board, most recent last, so they can be taken back
+    private int[] playedMoves = new int[256];
+    private int playedCount;
 
     public Board() {
         board = new Piece[8][8];
+        position = new Position();
         setupPieces();
     }
 
+    public Board(Position position) {
+        // Wrap an existing bitboard position; the matching piece objects are
+        // created the first time the grid is needed
+        board = new Piece[8][8];
+        this.position = position;
+        this.gridPending = true;
+    }
+
+    public static Board fromFen(String fen) {
+        // Side to move, castling rights, en passant square and clocks all come from the FEN
+        return new Board(Fen.parse(fen));
+    }
+
+    public String toFen() {
+        return Fen.format(position);
+    }
+
+    private static Piece createPiece(int code, PiecePosition position) {
+        // Create the object piece for a bitboard piece code
+        PieceColour colour = Bitboards.pieceColour(Bitboards.colourOf(code));
+        switch (Bitboards.typeOf(code)) {
+            case Bitboards.PAWN:
+                return new Pawn(colour, position);
+            case Bitboards.KNIGHT:
+                return new Knight(colour, position);
+            case Bitboards.BISHOP:
+                return new Bishop(colour, position);
+            case Bitboards.ROOK:
+                return new Rook(colour, position);
+            case Bitboards.QUEEN:
+                return new Queen(colour, position);
+            default:
+                return new King(colour, position);
+        }
+    }
+
     public void setupPieces() {
         // Initialise all piece placements
         // Rook placement
         board[0][0] = new Rook(PieceColour.BLACK, new PiecePosition(0, 0));
         board[0][7] = new Rook(PieceColour.BLACK, new PiecePosition(0, 7));
         board[7][0] = new Rook(PieceColour.WHITE, new PiecePosition(7, 0));
-        board[7][7] = new Rook(PieceColour.WHITE, new PiecePosition(0, 0));
+        board[7][7] = new Rook(PieceColour.WHITE, new PiecePosition(7, 7));
 
 
         board[0][1] = new Knight(PieceColour.BLACK, new PiecePosition(0, 1));
@@ -52,13 +105,26 @@ public class Board {
             board[1][i] = new Pawn(PieceColour.BLACK, new PiecePosition(1, i));
             board[6][i] = new Pawn(PieceColour.WHITE, new PiecePosition(6, i));
         }
+
+        // Mirror the grid onto the bitboards, white to move with all castling rights
+        position.clear();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                if (board[row][col] != null) {
+                    position.putPiece(Bitboards.pieceCode(board[row][col]), Bitboards.square(row, col));
+                }
+            }
+        }
+        position.setCastlingRights(Bitboards.ALL_CASTLING);
+        gridPending = false;
     }
 
     public void movePiece(PiecePosition start, PiecePosition end) {
+        ensureGrid();
         // Check if there is a piece at the start position
         // and that the move is valid
         if (board[start.getRow()][start.getCol()] != null && 
-            board[start.getRow()][start.getCol()].isValidMove(end, board)) {
+            board[start.getRow()][start.getCol()].isValidMove(end, board, position.getOccupancy())) {
                 // Perform the move - place piece at end position
                 board[end.getRow()][end.getCol()] = board[start.getRow()][start.getCol()];
                 
@@ -67,21 +133,95 @@ public class Board {
 
                 // Clear start position
                 board[start.getRow()][start.getCol()] = null;
+
+                // Keep the bitboards in step (this also passes the turn), then
+                // pick up anything the grid move missed, such as a promotion
+                int move = position.createMove(Bitboards.square(start.getRow(), start.getCol()), Bitboards.square(end.getRow(), end.getCol()));
+                position.makeMove(move);
+                recordMove(move);
+                syncGrid();
+            }
+    }
+
+    public void makeMove(int move) {
+        // Play a fully specified move (including castling, en passant and
+        // promotion) on the bitboards, then bring the grid up to date
+        position.makeMove(move);
+        recordMove(move);
+        if (!gridPending) {
+            syncGrid();
+        }
+    }
+
+    public boolean unmakeMove() {
+        // Take back the last move played on this board, if there is one
+        if (playedCount == 0) {
+            return false;
+        }
+        position.unmakeMove(playedMoves[--playedCount]);
+        if (!gridPending) {
+            syncGrid();
+        }
+        return true;
+    }
+
+    private void recordMove(int move) {
+        // Grow the history on the rare occasion a game outlasts it
+        if (playedCount == playedMoves.length) {
+            playedMoves = Arrays.copyOf(playedMoves, playedCount * 2);
+        }
+        playedMoves[playedCount++] = move;
+    }
+
+    private void ensureGrid() {
+        if (gridPending) {
+            syncGrid();
+        }
+    }
+
+    private void syncGrid() {
+        // Replace the piece object on any square whose contents no longer match the bitboards
+        for (int square = 0; square < 64; square++) {
+            int row = Bitboards.row(square);
+            int col = Bitboards.col(square);
+            int code = position.getPiece(square);
+            Piece current = board[row][col];
+            if (current == null ? code != Bitboards.EMPTY : Bitboards.pieceCode(current) != code) {
+                board[row][col] = code == Bitboards.EMPTY ? null : createPiece(code, new PiecePosition(row, col));
             }
+        }
+        gridPending = false;
     }
 
     public Piece[][] getBoard() {
+        ensureGrid();
         return this.board;
     }
+
+    public Position getPosition() {
+        return this.position;
+    }
     
+    public int evaluate() {
+        // Static evaluation from white's point of view; the position updates its
+        // running sums on every movePiece/setPiece, so this never scans the grid
+        int score = Evaluation.evaluate(position);
+        return position.getSideToMove() == Bitboards.WHITE ? score : -score;
+    }
+
     public Piece getPiece(int row, int col) {
+        ensureGrid();
         return board[row][col];
     }
 
     public void setPiece(int row, int col, Piece piece) {
+        ensureGrid();
         board[row][col] = piece;
+        int square = Bitboards.square(row, col);
+        position.removePiece(square);
         if (piece != null) {
             piece.setPosition(new PiecePosition(row, col));
+            position.putPiece(Bitboards.pieceCode(piece), square);
         }
     }
 }
\ No newline at end of file
@@ -4,42 +4,55 @@ package game;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
 
 // Custom imports
-import pieces.Piece;
 import pieces.PieceColour;
-import pieces.PiecePosition;
-import pieces.Bishop;
-import pieces.King;
-import pieces.Knight;
-import pieces.Pawn;
-import pieces.Queen;
-import pieces.Rook;
+import bitboard.Bitboards;
+import bitboard.Move;
+import bitboard.Position;
+import engine.OpeningBook;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.Tablebase;
 
 
 public class ChessGUI extends JFrame {
+    private static final long ENGINE_MOVE_TIME_MILLIS = 1000;
     private final ChessSquareComponent[][] squares = new ChessSquareComponent[8][8];
     private final Gameplay game = new Gameplay();
-    private final Map<Class<? extends Piece>, String> pieceMap = new HashMap<>() {
-        {
-            put(Pawn.class, "P");
-            put(Rook.class, "R");
-            put(Knight.class, "N");
-            put(Bishop.class, "B");
-            put(Queen.class, "Q");
-            put(King.class, "K");
-        }
-    };
+
+    // The engine thinks on its own thread; which sides it plays, and a status
+    // line for what it is thinking
+    private final EngineRunner engine = new EngineRunner();
+    private final boolean[] computerPlays = new boolean[2];
+    private final JPanel boardPanel = new JPanel(new GridLayout(8, 8));
+    private final JLabel statusLabel = new JLabel(" ");
+
+    // What each square currently shows, so a refresh only touches the squares
+    // that changed: the piece code drawn there (-2 before the first refresh)
+    // and the highlighted squares as a bitboard
+    private final int[] shownPieces = new int[64];
+    private long shownHighlights;
+
+    // Legal move targets per from square, worked out once per position and
+    // reused for every piece the player clicks on in that turn
+    private long[] legalTargets;
+    private long legalTargetsKey;
+    private int legalTargetsPly = -1;
 
     public ChessGUI() {
         setTitle("Chess Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setLayout(new GridLayout(8, 8));
+        setLayout(new BorderLayout());
+        add(boardPanel, BorderLayout.CENTER);
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        add(statusLabel, BorderLayout.SOUTH);
         initialiseBoard();
         addGameResetOption();
+        updateStatus();
         pack();
         setVisible(true);
     }
@@ -59,33 +72,25 @@ public class ChessGUI extends JFrame {
                     }
                 });
 
-                add(square);
+                boardPanel.add(square);
                 squares[row][col] = square;
             }
         }
 
         // Draw the board
+        Arrays.fill(shownPieces, -2);
         refreshBoard();
     }
 
     private void refreshBoard() {
-        // Iterate over every square, checking for piece presence
-        // then use the map to update that square with the appropriate symbol
-        Board board = game.getBoard();
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece != null) {
-                    // Piece found, retrieve appropriate symbol and colour
-                    String symbol = pieceMap.get(piece.getClass());
-                    Color colour = (piece.getColour() == PieceColour.WHITE) ? Color.WHITE : Color.BLUE;
-                    
-                    // Update squares grid
-                    squares[row][col].setPieceSymbol(symbol, colour);
-                } else {
-                    // Empty square
-                    squares[row][col].clearPieceSymbol();
-                }
+        // Compare the bitboard position with what is on screen and update only
+        // the squares that differ; the rest are not repainted at all
+        Position position = game.getBoard().getPosition();
+        for (int square = 0; square < 64; square++) {
+            int piece = position.getPiece(square);
+            if (piece != shownPieces[square]) {
+                squares[Bitboards.row(square)][Bitboards.col(square)].setPieceIcon(PieceGlyphs.get(piece));
+                shownPieces[square] = piece;
             }
         }
     }
@@ -93,7 +98,11 @@ public class ChessGUI extends JFrame {
     private void handleSquareClick(int row, int col) {
         // This method bridges user interactions with game logic
         // by determining whether a move has been made and then updating
-        // the board
+        // the board. The engine's side cannot be moved by hand, nor can anything
+        // while the engine is thinking
+        if (engine.isThinking() || isComputerToMove()) {
+            return;
+        }
         boolean moveResult = game.handleSquareSelection(row, col);
         clearHighlights();
 
@@ -102,12 +111,13 @@ public class ChessGUI extends JFrame {
             refreshBoard();
             checkGameState();
             checkGameOver();
+            updateStatus();
+            startEngineIfItsTurn();
         } 
         // If no move was made but a piece was selected, highlight it's legal moves
         else if (game.isPieceSelected()) {
-            highlightLegalMoves(new PiecePosition(row, col));
+            highlightLegalMoves(row, col);
         }
-        refreshBoard();
     }
 
 
@@ -130,25 +140,39 @@ public class ChessGUI extends JFrame {
             } else {
                 System.exit(0);
             }
+        } else if (game.isStalemate(game.getCurrentPlayerColour())) {
+            int response = JOptionPane.showConfirmDialog(this, "Stalemate! Would you like to play again?", "Game Over", JOptionPane.YES_NO_OPTION);
+            if (response == JOptionPane.YES_OPTION) {
+                resetGame();
+            } else {
+                System.exit(0);
+            }
         }
     }
 
-    private void highlightLegalMoves(PiecePosition position) {
+    private void highlightLegalMoves(int row, int col) {
         // Provide visual indication to the user of which moves
         // can be made with selected piece
-        List<PiecePosition> legalMoves = game.getLegalMovesForPiece(position);
-        for (PiecePosition move : legalMoves) {
-            squares[move.getRow()][move.getCol()].setBackground(Color.GREEN);
+        Position position = game.getBoard().getPosition();
+        if (legalTargets == null || legalTargetsKey != position.getKey() || legalTargetsPly != position.getPly()) {
+            legalTargets = game.getLegalTargets();
+            legalTargetsKey = position.getKey();
+            legalTargetsPly = position.getPly();
         }
+        showHighlights(legalTargets[Bitboards.square(row, col)]);
     }
 
     private void clearHighlights() {
-        // Clear the board of highlights by redrawing the checker pattern
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                squares[row][col].setBackground((row + col) % 2 == 0 ? Color.LIGHT_GRAY : Color.BLACK);
-            }
+        showHighlights(0L);
+    }
+
+    private void showHighlights(long highlights) {
+        // Only squares entering or leaving the highlighted set are recoloured
+        for (long changed = highlights ^ shownHighlights; changed != 0; changed &= changed - 1) {
+            int square = Long.numberOfTrailingZeros(changed);
+            squares[Bitboards.row(square)][Bitboards.col(square)].setHighlighted((highlights & (1L << square)) != 0);
         }
+        shownHighlights = highlights;
     }
 
     private void addGameResetOption() {
@@ -159,13 +183,210 @@ public class ChessGUI extends JFrame {
 
         resetItem.addActionListener(e -> resetGame());
         gameMenu.add(resetItem);
+
+        // Give the user an option to take back the last move
+        JMenuItem takeBackItem = new JMenuItem("Take back");
+        takeBackItem.addActionListener(e -> takeBackMove());
+        gameMenu.add(takeBackItem);
+
+        // Load any position as FEN, the current one offered as a starting point
+        JMenuItem loadPositionItem = new JMenuItem("Load position...");
+        loadPositionItem.addActionListener(e -> loadPosition());
+        gameMenu.add(loadPositionItem);
         menuBar.add(gameMenu);
+
+        // Let the engine play a move for whichever side is to move
+        JMenu engineMenu = new JMenu("Engine");
+        JMenuItem computerMoveItem = new JMenuItem("Computer move");
+        computerMoveItem.addActionListener(e -> makeComputerMove());
+        engineMenu.add(computerMoveItem);
+
+        // Cut the current search short and play its best move so far
+        JMenuItem moveNowItem = new JMenuItem("Move now");
+        moveNowItem.addActionListener(e -> engine.moveNow());
+        engineMenu.add(moveNowItem);
+
+        // Opening moves come from a Polyglot book, if one is loaded
+        JMenuItem bookItem = new JMenuItem("Opening book...");
+        bookItem.addActionListener(e -> loadOpeningBook());
+        engineMenu.add(bookItem);
+
+        // Endings of a few pieces are played from tables made with "tbgen"
+        JMenuItem tablebaseItem = new JMenuItem("Tablebases...");
+        tablebaseItem.addActionListener(e -> loadTablebases());
+        engineMenu.add(tablebaseItem);
+
+        // Play against the computer (or watch it play itself)
+        engineMenu.addSeparator();
+        for (int colour = Bitboards.WHITE; colour <= Bitboards.BLACK; colour++) {
+            int side = colour;
+            JCheckBoxMenuItem playsItem = new JCheckBoxMenuItem("Computer plays " + (side == Bitboards.WHITE ? "White" : "Black"));
+            playsItem.addActionListener(e -> {
+                computerPlays[side] = playsItem.isSelected();
+                startEngineIfItsTurn();
+            });
+            engineMenu.add(playsItem);
+        }
+        menuBar.add(engineMenu);
+
         setJMenuBar(menuBar);
     }
 
+    private void takeBackMove() {
+        // Undo the last move and redraw; against the computer, keep going back
+        // to the last position where it was the player's turn
+        engine.cancel();
+        if (game.undoMove()) {
+            boolean computerOnly = computerPlays[Bitboards.WHITE] && computerPlays[Bitboards.BLACK];
+            if (isComputerToMove() && !computerOnly) {
+                // Take back the move the computer was answering as well
+                game.undoMove();
+            }
+            clearHighlights();
+            refreshBoard();
+        }
+        updateStatus();
+    }
+
+    private void loadPosition() {
+        String fen = (String) JOptionPane.showInputDialog(this, "Position (FEN):", "Load position",
+                JOptionPane.PLAIN_MESSAGE, null, null, game.getFen());
+        if (fen == null || fen.isBlank()) {
+            return;
+        }
+        engine.cancel();
+        try {
+            game.loadPosition(fen);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Load position", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        clearHighlights();
+        refreshBoard();
+        checkGameState();
+        checkGameOver();
+        updateStatus();
+        startEngineIfItsTurn();
+    }
+
+    private void loadOpeningBook() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Opening book (Polyglot .bin)");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            game.setOpeningBook(OpeningBook.open(chooser.getSelectedFile().toPath()));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Opening book", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void loadTablebases() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Tablebase directory");
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            game.setTablebase(Tablebase.open(chooser.getSelectedFile().toPath()));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Tablebases", JOptionPane.ERROR_MESSAGE);
+        }
+        updateStatus();
+    }
+
+    private void makeComputerMove() {
+        // Search the current position in the background and play the engine's choice
+        if (engine.isThinking()) {
+            return;
+        }
+
+        // A book move is played without searching. It is played from the event
+        // queue, so the board is drawn between moves when the computer plays
+        // both sides, and dropped if the position changed in the meantime
+        int bookMove = game.getBookMove();
+        if (bookMove != Move.NONE) {
+            long key = game.getBoard().getPosition().getKey();
+            SwingUtilities.invokeLater(() -> {
+                if (game.getBoard().getPosition().getKey() == key && !engine.isThinking()) {
+                    playComputerMove(bookMove);
+                }
+            });
+            return;
+        }
+        Search search = game.createSearch();
+        engine.think(search, game.getPositionCopy(), SearchLimits.moveTime(ENGINE_MOVE_TIME_MILLIS),
+                this::showThinking, this::playEngineMove);
+        statusLabel.setText("Thinking...");
+    }
+
+    private void playEngineMove(SearchResult result) {
+        if (result.getBestMove() == Move.NONE) {
+            // No legal moves, the game is already over
+            updateStatus();
+            return;
+        }
+        playComputerMove(result.getBestMove());
+    }
+
+    private void playComputerMove(int move) {
+        game.makeMove(move);
+        clearHighlights();
+        refreshBoard();
+        checkGameState();
+        checkGameOver();
+        updateStatus();
+        startEngineIfItsTurn();
+    }
+
+    private void startEngineIfItsTurn() {
+        if (isComputerToMove() && !engine.isThinking() && !isGameOver()) {
+            makeComputerMove();
+        }
+    }
+
+    private boolean isComputerToMove() {
+        return computerPlays[game.getBoard().getPosition().getSideToMove()];
+    }
+
+    private boolean isGameOver() {
+        PieceColour colour = game.getCurrentPlayerColour();
+        return game.isCheckmate(colour) || game.isStalemate(colour);
+    }
+
+    private void showThinking(SearchResult result) {
+        // Score from white's point of view, in pawns
+        int score = game.getBoard().getPosition().getSideToMove() == Bitboards.WHITE ? result.getScore() : -result.getScore();
+        String scoreText = result.isMateScore()
+            ? "mate " + Search.mateDistance(score)
+            : String.format("%+.2f", score / 100.0);
+        StringBuilder pv = new StringBuilder();
+        for (int move : result.getPrincipalVariation()) {
+            pv.append(' ').append(Move.toString(move));
+        }
+        statusLabel.setText(String.format("Thinking: depth %d  score %s  nodes %,d  nps %,d  pv%s",
+                result.getDepth(), scoreText, result.getNodes(), result.getNodesPerSecond(), pv));
+    }
+
+    private void updateStatus() {
+        // With tables loaded, a known ending's result is shown as well
+        PieceColour toMove = game.getCurrentPlayerColour();
+        String result = game.isTablebaseWin(toMove) ? " (tablebase win)"
+                : game.isTablebaseDraw() ? " (tablebase draw)"
+                : game.isTablebaseWin(toMove == PieceColour.WHITE ? PieceColour.BLACK : PieceColour.WHITE) ? " (tablebase loss)"
+                : "";
+        statusLabel.setText(toMove + " to move" + result);
+    }
+
     private void resetGame() {
         // Call reset game and refresh board
+        engine.cancel();
         game.resetGame();
+        clearHighlights();
         refreshBoard();
+        updateStatus();
+        startEngineIfItsTurn();
     }
 }
@@ -5,8 +5,11 @@ import javax.swing.*;
 import java.awt.*;
 
 public class ChessSquareComponent extends JButton {
+    private static final Color HIGHLIGHT = Color.GREEN;
+
     private int row;
     private int col;
+    private Color baseColour;
 
     public ChessSquareComponent(int row, int col) {
         this.row = row;
@@ -20,26 +23,20 @@ public class ChessSquareComponent extends JButton {
 
         // Colour the odd and even squares differently to
         // create checker pattern
-        if ((row + col) % 2 == 0) {
-            setBackground(Color.LIGHT_GRAY);
-        } else {
-            setBackground(Color.BLACK);
-        }
+        baseColour = (row + col) % 2 == 0 ? Color.LIGHT_GRAY : Color.BLACK;
+        setBackground(baseColour);
 
         // Set alignment
         setHorizontalAlignment(SwingConstants.CENTER);
         setVerticalAlignment(SwingConstants.CENTER);
-
-        // Set font
-        setFont(new Font("Serif", Font.BOLD, 36));
     }
 
-    public void setPieceSymbol(String symbol, Color colour) {
-        this.setText(symbol);
-        this.setForeground(colour);
+    public void setPieceIcon(Icon icon) {
+        // The icons are shared and pre-rendered, so this only repaints the square
+        setIcon(icon);
     }
 
-    public void clearPieceSymbol() {
-        this.setText("");
+    public void setHighlighted(boolean highlighted) {
+        setBackground(highlighted ? HIGHLIGHT : baseColour);
     }
 }
@@ -0,0 +1,103 @@
+package game;
+
+// Standard imports
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Custom imports
+import bitboard.Position;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+
+class EngineRunner {
+    // Runs engine searches away from the Event Dispatch Thread. Every method
+    // here is called on the EDT, and both callbacks are delivered on it too,
+    // so the GUI never has to synchronise with the search.
+
+    // How often the status is refreshed while thinking; iterations can finish
+    // far faster than that, and only the latest one is worth showing
+    private static final int STATUS_INTERVAL_MILLIS = 100;
+
+    // A single thread, so a cancelled search has always unwound before the
+    // next one starts with the same hash table. It runs just below normal
+    // priority, as do the helper threads it creates, so the EDT wins any
+    // contention for a core while the search keeps every core busy
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "engine");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private Search search;
+    private Timer statusTimer;
+
+    // Bumped on every start and cancel; a result from an older search is dropped
+    private int generation;
+
+    boolean isThinking() {
+        return search != null;
+    }
+
+    void think(Search search, Position position, SearchLimits limits,
+               Consumer<SearchResult> onProgress, Consumer<SearchResult> onMove) {
+        cancel();
+        int id = ++generation;
+        this.search = search;
+
+        // The search thread only ever stores the newest iteration; the timer
+        // picks it up on the EDT at a steady rate
+        AtomicReference<SearchResult> latest = new AtomicReference<>();
+        search.setListener(latest::set);
+        statusTimer = new Timer(STATUS_INTERVAL_MILLIS, e -> {
+            SearchResult result = latest.getAndSet(null);
+            if (result != null && id == generation) {
+                onProgress.accept(result);
+            }
+        });
+        statusTimer.start();
+
+        // Cleared here rather than on the engine thread, so that a cancel
+        // before the search has started still stops it
+        search.prepare();
+        executor.execute(() -> {
+            SearchResult result = search.search(position, limits);
+            SwingUtilities.invokeLater(() -> {
+                if (id != generation) {
+                    return;
+                }
+                finish();
+                onMove.accept(result);
+            });
+        });
+    }
+
+    void moveNow() {
+        // Stop early but still play the best move found so far
+        if (search != null) {
+            search.stop();
+        }
+    }
+
+    void cancel() {
+        // Stop and forget the current search, e.g. because the board changed under it
+        if (search != null) {
+            generation++;
+            search.stop();
+            finish();
+        }
+    }
+
+    private void finish() {
+        search = null;
+        if (statusTimer != null) {
+            statusTimer.stop();
+            statusTimer = null;
+        }
+    }
+}
@@ -7,18 +7,38 @@ import java.util.ArrayList;
 // Custom imports
 import pieces.PieceColour;
 import pieces.PiecePosition;
-import pieces.King;
 import pieces.Piece;
+import bitboard.Bitboards;
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+import bitboard.Position;
+import engine.OpeningBook;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.Tablebase;
+import engine.TranspositionTable;
 
 public class Gameplay {
+    private static final int ENGINE_HASH_MB = 64;
+    private static final int ENGINE_THREADS = Runtime.getRuntime().availableProcessors();
+
     private Board board;
-    private boolean whiteTurn = true;
     private PiecePosition selectedPiecePosition;
+    private TranspositionTable transpositionTable;
+    private OpeningBook openingBook;
+    private Tablebase tablebase;
 
     public Gameplay() {
         this.board = new Board();
     }
 
+    public Gameplay(Board board) {
+        // Continue play from an existing board
+        this.board = board;
+    }
+
     public Board getBoard() {
         return this.board;
     }
@@ -27,15 +47,16 @@ public class Gameplay {
         Piece movingPiece = board.getPiece(start.getRow(), start.getCol());
         
         // Ensure space is not empty or piece is wrong colour
-        if (movingPiece == null || movingPiece.getColour() != (whiteTurn ? PieceColour.WHITE : PieceColour.BLACK)) {
+        if (movingPiece == null || movingPiece.getColour() != getCurrentPlayerColour()) {
             return false;
         }
 
-        // Ensure desired move is valid for this given piece
-        if (movingPiece.isValidMove(end, board.getBoard())) {
-            // Move piece and swap turn
-            board.movePiece(start, end);
-            whiteTurn = !whiteTurn;
+        // Ensure desired move is one of the legal moves in this position, and play
+        // the generated move so castling, en passant and promotion come out right
+        int move = findLegalMove(start, end);
+        if (move != Move.NONE) {
+            // Move piece (the board's position also swaps the turn)
+            board.makeMove(move);
 
             return true;
         }
@@ -44,98 +65,137 @@ public class Gameplay {
         return false;
     }
 
-    private PiecePosition findKingPosition(PieceColour kingColour) {
-        // Iterate through the board and find the given coloured king
-        for (int row = 0; row < board.getBoard().length; row++) {
-            for (int col = 0; col < board.getBoard()[row].length; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece instanceof King && piece.getColour() == kingColour) {
-                    return new PiecePosition(row, col);
-                }
-            } 
+    private int findLegalMove(PiecePosition start, PiecePosition end) {
+        // Promotions are generated queen first, so a pawn reaching the last rank becomes a queen
+        int from = Bitboards.square(start.getRow(), start.getCol());
+        int to = Bitboards.square(end.getRow(), end.getCol());
+        MoveList moves = MoveGenerator.generateLegalMoves(board.getPosition());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.from(move) == from && Move.to(move) == to) {
+                return move;
+            }
         }
-        throw new RuntimeException("King not on board");
+        return Move.NONE;
     }
 
-    private boolean isPositionOnBoard(PiecePosition position) {
-        // Return whether the given position is a valid position in our 2D grid
-        return position.getRow() >= 0 && position.getRow() < board.getBoard().length 
-        && position.getCol() >= 0 && position.getCol() < board.getBoard()[0].length;
+    public void makeMove(int move) {
+        // Play a move chosen by the engine (already known to be legal)
+        board.makeMove(move);
+        selectedPiecePosition = null;
     }
 
-    public boolean isInCheck(PieceColour kingColour) {
-        // Iterate through each square, checking if that piece is checking the king
-        PiecePosition kingPosition = findKingPosition(kingColour);
-        for (int row = 0; row < board.getBoard().length; row++) {
-            for (int col = 0; col < board.getBoard()[row].length; col++) {
-                Piece piece = board.getPiece(row, col);
-                if (piece != null && piece.getColour() != kingColour) {
-                    if (piece.isValidMove(kingPosition, board.getBoard())) {
-                        // A piece of the opposite colour is able to capture the king (!)
-                        return true;
-                    }
-                }
-            }
+    public boolean undoMove() {
+        // Take back the last move, if any
+        selectedPiecePosition = null;
+        return board.unmakeMove();
+    }
+
+    public SearchResult findBestMove(SearchLimits limits) {
+        // Search a copy of the current position so the board is left untouched
+        return createSearch().search(getPositionCopy(), limits);
+    }
+
+    public Search createSearch() {
+        // A search on every core, sharing one hash table for the whole game so
+        // later searches reuse earlier work
+        if (transpositionTable == null) {
+            transpositionTable = new TranspositionTable(ENGINE_HASH_MB);
         }
-        // No piece checking the king was found
-        return false;
+        Search search = new Search(transpositionTable);
+        search.setThreads(ENGINE_THREADS);
+        search.setTablebase(tablebase);
+        return search;
     }
 
-    private boolean wouldBeInCheckAfterMove(PieceColour kingColour, PiecePosition from, PiecePosition to) {
-        // Simulate move
-        Piece temp = board.getPiece(to.getRow(), to.getCol());
-        board.setPiece(to.getRow(), to.getCol(), board.getPiece(from.getRow(), from.getCol()));
-        board.setPiece(from.getRow(), from.getCol(), null);
-        boolean inCheck = isInCheck(kingColour);
+    public void setOpeningBook(OpeningBook openingBook) {
+        // Null plays without a book
+        this.openingBook = openingBook;
+    }
 
-        // Undo move
-        board.setPiece(from.getRow(), from.getCol(), board.getPiece(to.getRow(), to.getCol()));
-        board.setPiece(to.getRow(), to.getCol(), temp);
+    public int getBookMove() {
+        // A move from the book for the current position, picked at random by
+        // weight, or Move.NONE once play has left the book
+        return openingBook == null ? Move.NONE : openingBook.pickWeighted(board.getPosition());
+    }
 
-        return inCheck;
+    public void setTablebase(Tablebase tablebase) {
+        // Null plays endings without tables
+        this.tablebase = tablebase;
     }
 
-    public boolean isCheckmate(PieceColour kingColour) {
-        if (!isInCheck(kingColour)) {
-            // Not in check so not checkmate
+    public boolean isTablebaseWin(PieceColour colour) {
+        // Whether the tables say this side can force mate from here, whoever
+        // is to move; false when the position is not in the tables
+        if (tablebase == null) {
             return false;
         }
+        int result = tablebase.probeResult(board.getPosition());
+        return result != Tablebase.UNKNOWN && result != Tablebase.DRAW
+                && (result == Tablebase.WIN) == (colour == getCurrentPlayerColour());
+    }
 
-        // Select the king
-        PiecePosition kingPosition = findKingPosition(kingColour);
-        King king = (King) board.getPiece(kingPosition.getRow(), kingPosition.getCol());
-
-        // Attempt to find a move that gets the king out of check
-        for (int rowOffSet = -1; rowOffSet <= 1; rowOffSet++) {
-            for (int colOffSet = -1; colOffSet <= 1; colOffSet++) {
-                if (rowOffSet == 0 && colOffSet == 0) {
-                    // Skip current king position
-                    continue;
-                }
-                
-                // Check if this new move is valid and does not result in check
-                PiecePosition newPosition = new PiecePosition(kingPosition.getRow() + rowOffSet, kingPosition.getCol() + colOffSet);
-                if (isPositionOnBoard(newPosition) && king.isValidMove(newPosition, board.getBoard())
-                    && !wouldBeInCheckAfterMove(kingColour, kingPosition, newPosition)) {
-                        // Appropriate move found, so not checkmate
-                        return false;
-                }
-            }
+    public boolean isTablebaseDraw() {
+        // Whether the tables say neither side can force mate from here
+        return tablebase != null && tablebase.probeResult(board.getPosition()) == Tablebase.DRAW;
+    }
+
+    public Position getPositionCopy() {
+        // Safe to hand to another thread while play continues on the board
+        return new Position(board.getPosition());
+    }
+
+    private PiecePosition findKingPosition(PieceColour kingColour) {
+        // The position tracks each king's square as it moves
+        int square = board.getPosition().getKingSquare(Bitboards.colourIndex(kingColour));
+        if (square == Bitboards.NO_SQUARE) {
+            throw new RuntimeException("King not on board");
         }
+        return new PiecePosition(Bitboards.row(square), Bitboards.col(square));
+    }
+
+    public boolean isInCheck(PieceColour kingColour) {
+        // Look outwards from the king square with each piece type's attack pattern
+        // rather than asking every enemy piece whether it can reach the king
+        return board.getPosition().isInCheck(Bitboards.colourIndex(kingColour));
+    }
 
-        // No legal moves available, game over
-        return true;
+    public boolean isCheckmate(PieceColour kingColour) {
+        // Checkmate: the side to move is in check and has no legal move, counting
+        // blocks and captures by any piece as well as king moves
+        return kingColour == getCurrentPlayerColour() && isInCheck(kingColour) && !hasLegalMove();
+    }
+
+    public boolean isStalemate(PieceColour kingColour) {
+        // Stalemate: the side to move has no legal move but is not in check
+        return kingColour == getCurrentPlayerColour() && !isInCheck(kingColour) && !hasLegalMove();
+    }
+
+    private boolean hasLegalMove() {
+        return !MoveGenerator.generateLegalMoves(board.getPosition()).isEmpty();
     }
 
     public void resetGame() {
-        // Re-initialise board and reset turn to white
+        // Re-initialise board (which also resets the turn to white)
         this.board = new Board();
-        this.whiteTurn = true;
+        if (transpositionTable != null) {
+            transpositionTable.clear();
+        }
+    }
+
+    public void loadPosition(String fen) {
+        // Start from an arbitrary position; throws IllegalArgumentException for a bad FEN
+        this.board = Board.fromFen(fen);
+        this.selectedPiecePosition = null;
+    }
+
+    public String getFen() {
+        return board.toFen();
     }
 
     public PieceColour getCurrentPlayerColour() {
         // Return White or Black depending on who's turn it is
-        return whiteTurn ? PieceColour.WHITE : PieceColour.BLACK;
+        return Bitboards.pieceColour(board.getPosition().getSideToMove());
     }
 
     public boolean isPieceSelected() {
@@ -167,116 +227,38 @@ public class Gameplay {
         return false;
     }
 
-    private void addLineMoves(PiecePosition position, int[][] directions, List<PiecePosition> legalMoves) {
-        // Computes legal moves along straight and diagonal lines by iterating through specified directions
-        // from the given position, until a blocking piece or the board edge is reached 
-        for (int[] d: directions) {
-            PiecePosition newPos = new PiecePosition(position.getRow() + d[0], position.getCol() + d[1]);
-            while (isPositionOnBoard(newPos)) {
-                if (board.getPiece(newPos.getRow(), newPos.getCol()) == null) {
-                    // Empty square in path = legal move has been found
-                    legalMoves.add(new PiecePosition(newPos.getRow(), newPos.getCol()));
-
-                    // Move on to next square in sequence
-                    newPos = new PiecePosition(newPos.getRow() + d[0], newPos.getCol() + d[1]);
-                } 
-                // For mon-empty squares, check if it is a capturable piece
-                else {
-                    if (board.getPiece(newPos.getRow(), newPos.getCol()).getColour() != board.getPiece(position.getRow(), position.getCol()).getColour()) {
-                        // Piece of opposing colour reached = legal move has been found
-                        legalMoves.add(newPos);
-                    }
-                }
-            }
-        }
-    }
-
-    public void addSingleMoves(PiecePosition position, int[][] moves, List<PiecePosition> legalMoves) {
-        // Computes legal single moves by iterating through specified directions
-        // from the given position, until a blocking piece or the board edge is reached 
-        for (int[] move : moves) {
-            PiecePosition newPos = new PiecePosition(position.getRow() + move[0], position.getCol() + move[1]);
-            
-            // If this is a valid square on the board that is either empty or contains a piece of the opposite colour,
-            // then it is a legal move
-            if (isPositionOnBoard(newPos) && (board.getPiece(newPos.getRow(), newPos.getCol()) == null || 
-                board.getPiece(newPos.getRow(), newPos.getCol()).getColour() != board.getPiece(position.getRow(), position.getCol()).getColour())) {
-                    legalMoves.add(newPos);
-                }
-        }
-    }
-
-    public void addPawnMoves(PiecePosition position, PieceColour colour, List<PiecePosition> legalMoves) {
-        // Pawns are slightly more complex to compute as they can take either one or two moves depending on
-        // whether they have already moved.
-        // They also capture diagonally i.e. a direction different to how they move
-        int direction = colour == PieceColour.WHITE ? -1 : 1;
-
-        // Generate move
-        PiecePosition newPos = new PiecePosition(position.getRow() + direction, position.getCol());
-        
-        // Conditions for a standard single move (valid board position and square ahead is free)
-        if (isPositionOnBoard(newPos) && board.getPiece(newPos.getRow(), newPos.getCol()) == null) {
-            legalMoves.add(newPos);
-        }
-
-        // Conditions for a double move (valid board position, pawn has not moved, and 2 squares ahead are free)
-        // This is only checked if the pawn has not moved before
-        if ((colour == PieceColour.WHITE && position.getRow() == 6) || (colour == PieceColour.BLACK && position.getRow() == 1)) {
-            newPos = new PiecePosition(position.getRow() + 2 * direction, position.getCol());
-            PiecePosition middleStep = new PiecePosition(position.getRow() + direction, position.getCol());
-
-            // Valid board position and no pieces blocking = legal move found
-            if (isPositionOnBoard(newPos) && board.getPiece(newPos.getRow(), newPos.getCol()) == null 
-                && board.getPiece(middleStep.getRow(), middleStep.getCol()) == null) {
-                    legalMoves.add(newPos);
-            }
-        }
-
-        // Conditions for a capture (valid board position and there is an opposing piece on a diagonal square)
-        // Determine the two possible spaces for capture - edge case of one of them not being on the board
-        int[] captureCols = {position.getCol() -1, position.getCol() + 1};
-        for (int col : captureCols) {
-            newPos = new PiecePosition(position.getRow() + direction, col);
-            // If either space is on the board and has an opposing piece on it = legal move found
-            if (isPositionOnBoard(newPos) && board.getPiece(newPos.getRow(), newPos.getCol()) != null 
-                && board.getPiece(newPos.getRow(), newPos.getCol()).getColour() != colour) {
-                    legalMoves.add(newPos);
-                }
+    public long[] getLegalTargets() {
+        // Target squares (as a bitboard) of the side to move's legal moves, for
+        // every from square at once
+        long[] targets = new long[64];
+        MoveList moves = MoveGenerator.generateLegalMoves(board.getPosition());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            targets[Move.from(move)] |= 1L << Move.to(move);
         }
+        return targets;
     }
 
     public List<PiecePosition> getLegalMovesForPiece(PiecePosition position) {
         Piece selectedPiece = board.getPiece(position.getRow(), position.getCol());
 
-        // Base case of no piece being on square
-        if (selectedPiece == null) {
+        // Base case of no piece being on square, or a piece whose side is not to move
+        if (selectedPiece == null || selectedPiece.getColour() != getCurrentPlayerColour()) {
             return new ArrayList<>();
         }
 
-        // Determine which piece is selected and then add the legal moves to an ArrayList
-        // based on 2D grid coords
+        // Generate every legal move for the side to move in one pass, then keep
+        // the target squares of those starting from the selected piece
         List<PiecePosition> legalMoves = new ArrayList<>();
-        switch (selectedPiece.getClass().getSimpleName()) {
-            case "Pawn":
-                addPawnMoves(position, selectedPiece.getColour(), legalMoves);
-                break;
-            case "Rook":
-                addLineMoves(position, new int[][]{{1,0}, {-1,0}, {0,1}, {0,-1}}, legalMoves);
-                break;
-            case "Knight":
-                addSingleMoves(position, new int[][]{{2,1}, {2,-1}, {-2, 1}, {-2, -1}, {1, 2}, {-1, 2}, {1, -2}, {-1, -2}}, legalMoves);
-                break;
-            case "Bishop":
-                addLineMoves(position, new int[][]{{1,1}, {-1,-1}, {1,-1}, {-1,1}}, legalMoves);
-                break;
-            case "Queen":
-                addLineMoves(position, new int[][]{{1,0}, {-1,0}, {0,1}, {0,-1}, {1,1}, {-1,-1}, {1,-1}, {-1,1}}, legalMoves);
-                break;
-            case "King":
-                addSingleMoves(position, new int[][]{{1,0}, {-1,0}, {0,1},{0,-1}, {1,1}, {-1,-1}, {1,-1}, {-1,1}}, legalMoves);
-                break;
+        int from = Bitboards.square(position.getRow(), position.getCol());
+        MoveList moves = MoveGenerator.generateLegalMoves(board.getPosition());
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            // Skip under-promotions, the queen promotion already covers the square
+            if (Move.from(move) == from && (!Move.isPromotion(move) || Move.promotionType(move) == Bitboards.QUEEN)) {
+                legalMoves.add(new PiecePosition(Bitboards.row(Move.to(move)), Bitboards.col(Move.to(move))));
+            }
         }
         return legalMoves;
     }
-}
\ No newline at end of file
+}
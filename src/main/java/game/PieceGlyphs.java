@@ -0,0 +1,47 @@
+package game;
+
+// Standard imports
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+// Custom imports
+import bitboard.Bitboards;
+
+final class PieceGlyphs {
+    // Every piece drawn once, up front, as an image per bitboard piece code;
+    // showing a piece afterwards is only a matter of handing a square its icon
+    private static final int SIZE = 64;
+    private static final String LETTERS = "PNBRQK";
+    private static final Icon[] ICONS = new Icon[12];
+
+    static {
+        Font font = new Font("Serif", Font.BOLD, 36);
+        for (int piece = 0; piece < ICONS.length; piece++) {
+            BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setFont(font);
+            graphics.setColor(Bitboards.colourOf(piece) == Bitboards.WHITE ? Color.WHITE : Color.BLUE);
+            String letter = String.valueOf(LETTERS.charAt(Bitboards.typeOf(piece)));
+            FontMetrics metrics = graphics.getFontMetrics();
+            graphics.drawString(letter, (SIZE - metrics.stringWidth(letter)) / 2,
+                    (SIZE - metrics.getHeight()) / 2 + metrics.getAscent());
+            graphics.dispose();
+            ICONS[piece] = new ImageIcon(image);
+        }
+    }
+
+    private PieceGlyphs() {
+    }
+
+    static Icon get(int piece) {
+        // null for an empty square
+        return piece == Bitboards.EMPTY ? null : ICONS[piece];
+    }
+}
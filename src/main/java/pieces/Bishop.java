@@ -1,41 +1,35 @@
 package pieces;
 
+// Custom imports
+import bitboard.Attacks;
+import bitboard.Bitboards;
+
 public class Bishop extends Piece {
     public Bishop(PieceColour colour, PiecePosition position) {
         super(colour, position);
     }
 
+    @Override
+    public PieceType getType() {
+        return PieceType.BISHOP;
+    }
+
     @Override
     public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
-        // Cannot move to the square it is already on
-        if (newPosition.equals(this.position)) {
-            return false;
-        }
-        
-        // Calculate difference between new pos and current pos
-        int rowDiff = Math.abs(position.getRow() - newPosition.getRow());
-        int colDiff = Math.abs(position.getCol() - newPosition.getCol());
+        // Without an occupancy bitboard to hand, derive one from the grid
+        return isValidMove(newPosition, board, Bitboards.occupancy(board));
+    }
 
-        // Check to see if move is non-diagonal
-        if (rowDiff != colDiff) {
+    @Override
+    public boolean isValidMove(PiecePosition newPosition, Piece[][] board, long occupancy) {
+        // Look up every square reachable along an unobstructed diagonal given the current blockers,
+        // which also rules out moving to the square it is already on
+        int from = Bitboards.square(position.getRow(), position.getCol());
+        int to = Bitboards.square(newPosition.getRow(), newPosition.getCol());
+        if ((Attacks.bishopAttacks(from, occupancy) & Bitboards.bit(to)) == 0) {
             return false;
         }
 
-        // Determine which direction the bishop is moving
-        int rowStep = newPosition.getRow() > position.getRow() ? 1 : -1;
-        int colStep = newPosition.getCol() > position.getCol() ? 1 : -1;
-
-        // Number of squares to check for obstructions
-        int steps = rowDiff - 1;
-
-        // Check to see if path is clear
-        for (int i = 1; i <= steps; i++) {
-            if (board[position.getRow() + i * rowStep][position.getCol() + i * colStep] != null) {
-                // Piece in way
-                return false;
-            }
-        }
-
         // Ensure that target square is empty or has a piece of the opposite colour
         Piece targetPiece = board[newPosition.getRow()][newPosition.getCol()];
         if (targetPiece == null) {
@@ -5,6 +5,11 @@ public class King extends Piece {
         super(colour, position);
     }
 
+    @Override
+    public PieceType getType() {
+        return PieceType.KING;
+    }
+
     @Override
     public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
         // Calculate difference between new pos and current pos
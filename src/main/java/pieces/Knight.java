@@ -5,6 +5,11 @@ public class Knight extends Piece {
         super(colour, position);
     }
 
+    @Override
+    public PieceType getType() {
+        return PieceType.KNIGHT;
+    }
+
     @Override
     public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
         // Cannot move to the square it is already on
@@ -5,6 +5,11 @@ public class Pawn extends Piece {
         super(colour, position);
     }    
 
+    @Override
+    public PieceType getType() {
+        return PieceType.PAWN;
+    }
+
     @Override
     public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
         // Cannot move to the square it is already on
@@ -21,6 +21,16 @@ public abstract class Piece {
         this.position = position;
     }
 
+    // Each subclass reports which kind of piece it is, so that callers can
+    // map it onto bitboards without instanceof chains
+    public abstract PieceType getType();
+
     // Each piece type will have a different implementation of this method
     public abstract boolean isValidMove(PiecePosition newPosition, Piece[][] board);
+
+    // Variant for callers that already hold the board's occupancy bitboard;
+    // sliding pieces use it for a table lookup, the others ignore it
+    public boolean isValidMove(PiecePosition newPosition, Piece[][] board, long occupancy) {
+        return isValidMove(newPosition, board);
+    }
 }
@@ -0,0 +1,10 @@
+package pieces;
+
+public enum PieceType {
+    PAWN,
+    KNIGHT,
+    BISHOP,
+    ROOK,
+    QUEEN,
+    KING;
+}
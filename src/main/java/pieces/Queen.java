@@ -1,48 +1,35 @@
 package pieces;
 
+// Custom imports
+import bitboard.Attacks;
+import bitboard.Bitboards;
+
 public class Queen extends Piece {
     public Queen(PieceColour colour, PiecePosition position) {
         super(colour, position);
     }
 
     @Override
-    public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
-        // Cannot move to the square it is already on
-        if (newPosition.equals(this.position)) {
-            return false;
-        }
-
-        // Calculate difference between new pos and current pos
-        int rowDiff = Math.abs(position.getRow() - newPosition.getRow());
-        int colDiff = Math.abs(position.getCol() - newPosition.getCol());
-        
-        // Check for straight line movement
-        boolean straightLine = this.position.getRow() == newPosition.getRow() || this.position.getCol() == newPosition.getCol();
+    public PieceType getType() {
+        return PieceType.QUEEN;
+    }
 
-        // Check for diagonal line movement
-        boolean diagonalLine = rowDiff == colDiff;
+    @Override
+    public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
+        // Without an occupancy bitboard to hand, derive one from the grid
+        return isValidMove(newPosition, board, Bitboards.occupancy(board));
+    }
 
-        // Invalid if move is neither straight nor diagonal
-        if (!straightLine && !diagonalLine) {
+    @Override
+    public boolean isValidMove(PiecePosition newPosition, Piece[][] board, long occupancy) {
+        // Look up every square reachable along an unobstructed line or diagonal given the current blockers,
+        // which also rules out moving to the square it is already on
+        int from = Bitboards.square(position.getRow(), position.getCol());
+        int to = Bitboards.square(newPosition.getRow(), newPosition.getCol());
+        if ((Attacks.queenAttacks(from, occupancy) & Bitboards.bit(to)) == 0) {
             return false;
         }
 
-        // Determine direction of movement
-        int rowDirection = Integer.compare(newPosition.getRow(), this.position.getRow());
-        int colDirection = Integer.compare(newPosition.getCol(), this.position.getCol());
-
-        // Check for obstructions
-        int currentRow = this.position.getRow() + rowDirection;
-        int currentCol = this.position.getCol() + colDirection;
-        while (currentRow != newPosition.getRow() || currentCol != newPosition.getCol()) {
-            if (board[currentRow][currentCol] != null) {
-                // Piece is in the way
-                return false;
-            }
-            currentRow += rowDirection;
-            currentCol += colDirection;
-        }
-
         // Ensure that target square is empty or has a piece of the opposite colour
         Piece targetPiece = board[newPosition.getRow()][newPosition.getCol()];
         if (targetPiece == null) {
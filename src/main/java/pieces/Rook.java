@@ -1,61 +1,41 @@
 package pieces;
 
+// Custom imports
+import bitboard.Attacks;
+import bitboard.Bitboards;
+
 public class Rook extends Piece {
     public Rook(PieceColour colour, PiecePosition position) {
         super(colour, position);
     }
 
+    @Override
+    public PieceType getType() {
+        return PieceType.ROOK;
+    }
+
     @Override
     public boolean isValidMove(PiecePosition newPosition, Piece[][] board) {
-        // Cannot move to the square it is already on
-        if (newPosition.equals(this.position)) {
-            return false;
-        }
-        
-        // Horizontal move (row stays the same)
-        if (position.getRow() == newPosition.getRow()) {
-            // Determine beginning and end points for this move
-            int columnStart = Math.min(position.getCol(), newPosition.getCol()) + 1;
-            int columnEnd = Math.max(position.getCol(), newPosition.getCol());
-            
-            // Ensure that the path is clear
-            for (int column = columnStart; column < columnEnd; column++) {
-                if (board[position.getRow()][column] != null) {
-                    // Piece is in the way
-                    return false;
-                }
-            }
-        } 
-        // Vertical move (column stays the same)
-        else if (position.getCol() == newPosition.getCol()) {
-            // Determine beginning and end points for this move
-            int rowStart = Math.min(position.getRow(), newPosition.getRow());
-            int rowEnd = Math.max(position.getRow(), newPosition.getRow());
+        // Without an occupancy bitboard to hand, derive one from the grid
+        return isValidMove(newPosition, board, Bitboards.occupancy(board));
+    }
 
-            // Ensure that the path is clear
-            for (int row = rowStart; row < rowEnd; row++) {
-                if (board[row][position.getCol()] != null) {
-                    // Piece is in the way
-                    return false;
-                }
-            }
-        }
-        // If the above conditions are not met, then the move is not a straight line
-        else {
+    @Override
+    public boolean isValidMove(PiecePosition newPosition, Piece[][] board, long occupancy) {
+        // Look up every square reachable along an unobstructed rank or file given the current blockers,
+        // which also rules out moving to the square it is already on
+        int from = Bitboards.square(position.getRow(), position.getCol());
+        int to = Bitboards.square(newPosition.getRow(), newPosition.getCol());
+        if ((Attacks.rookAttacks(from, occupancy) & Bitboards.bit(to)) == 0) {
             return false;
         }
 
-        // Check to see if this is a capture move
+        // Ensure that target square is empty or has a piece of the opposite colour
         Piece targetPiece = board[newPosition.getRow()][newPosition.getCol()];
         if (targetPiece == null) {
-            // Destination is free, move is valid
-            return true;
-        } else if (targetPiece.getColour() != this.getColour()) {
-            // Destination has a piece of opposite colour, move is valid
             return true;
+        } else {
+            return targetPiece.getColour() != this.getColour();
         }
-
-        // Invalid move if no other conditions have been met
-        return false;
     }
 }
@@ -0,0 +1,74 @@
+package tools;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.Position;
+import engine.Network;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+
+public class Analyse {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static void main(String[] args) {
+        // Usage: analyse [--depth <n>] [--movetime <ms>] [--threads <n>] [--nnue <file> [--scalar]] [fen]
+        int depth = Integer.MAX_VALUE;
+        int threads = 1;
+        long moveTime = Long.MAX_VALUE;
+        String networkFile = null;
+        boolean vectorised = true;
+        int index = 0;
+        while (index < args.length && args[index].startsWith("--")) {
+            switch (args[index]) {
+                case "--depth" -> depth = Integer.parseInt(args[++index]);
+                case "--movetime" -> moveTime = Long.parseLong(args[++index]);
+                case "--threads" -> threads = Integer.parseInt(args[++index]);
+                case "--nnue" -> networkFile = args[++index];
+                case "--scalar" -> vectorised = false;
+                default -> {
+                    System.err.println("Usage: analyse [--depth <n>] [--movetime <ms>] [--threads <n>] [--nnue <file> [--scalar]] [fen]");
+                    System.exit(2);
+                }
+            }
+            index++;
+        }
+        if (depth == Integer.MAX_VALUE && moveTime == Long.MAX_VALUE) {
+            // Without any limit the search would never return
+            moveTime = 5000;
+        }
+
+        String fen = index < args.length ? String.join(" ", List.of(args).subList(index, args.length)) : START_FEN;
+        Search search = new Search();
+        search.setThreads(threads);
+        if (networkFile != null) {
+            Network network = loadNetwork(networkFile, vectorised);
+            System.out.println("info string network " + networkFile + " (" + network.getKernelName() + ")");
+            search.setNetwork(network);
+        }
+        search.setListener(result -> System.out.println("info " + result));
+        SearchResult result = search.search(Position.fromFen(fen), new SearchLimits(depth, moveTime));
+
+        // Work done by each thread, to see how evenly Lazy SMP spreads the load
+        long[] workerNodes = search.getWorkerNodes();
+        for (int i = 0; i < workerNodes.length; i++) {
+            System.out.println("info string thread " + i + " nodes " + workerNodes[i]);
+        }
+        System.out.println("bestmove " + (result.getBestMove() == Move.NONE ? "(none)" : Move.toString(result.getBestMove())));
+    }
+
+    private static Network loadNetwork(String file, boolean vectorised) {
+        try {
+            return Network.load(Path.of(file), vectorised);
+        } catch (IOException e) {
+            System.err.println("Could not load network: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package tools;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.Position;
+import engine.Network;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchOptions;
+import engine.SearchResult;
+import engine.TranspositionTable;
+
+public class Bench {
+    private static final int DEFAULT_DEPTH = 8;
+    private static final int HASH_MB = 16;
+
+    // Fixed positions from opening to endgame, so node counts are comparable between runs
+    private static final List<String> POSITIONS = List.of(
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP2BPPP/R2QKB1R w KQ - 1 8",
+        "2r2rk1/pp3ppp/2n1b3/q2pP3/3P4/P1PB1N2/5PPP/R2Q1RK1 b - - 2 16",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"
+    );
+
+    public static void main(String[] args) {
+        // Usage: bench [--depth <n>] [--threads <n>] [--no-null-move] [--no-lmr] [--no-futility] [--no-aspiration] [--nnue <file> [--scalar]]
+        // Searches every position to a fixed depth from an empty hash table and
+        // reports nodes and time, so the effect of each option can be compared
+        int depth = DEFAULT_DEPTH;
+        int threads = 1;
+        SearchOptions options = new SearchOptions();
+        String networkFile = null;
+        boolean vectorised = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--no-null-move" -> options.setNullMovePruning(false);
+                case "--no-lmr" -> options.setLateMoveReductions(false);
+                case "--no-futility" -> options.setFutilityPruning(false);
+                case "--no-aspiration" -> options.setAspirationWindows(false);
+                case "--nnue" -> networkFile = args[++i];
+                case "--scalar" -> vectorised = false;
+                default -> {
+                    System.err.println("Usage: bench [--depth <n>] [--threads <n>] [--no-null-move] [--no-lmr] [--no-futility] [--no-aspiration] [--nnue <file> [--scalar]]");
+                    System.exit(2);
+                }
+            }
+        }
+
+        Network network = networkFile == null ? null : loadNetwork(networkFile, vectorised);
+        System.out.println("Options: " + options + ", depth " + depth + ", threads " + threads
+                + (network == null ? "" : ", network " + networkFile + " (" + network.getKernelName() + ")"));
+        TranspositionTable transpositionTable = new TranspositionTable(HASH_MB);
+        long totalNodes = 0;
+        long totalMillis = 0;
+        for (String fen : POSITIONS) {
+            transpositionTable.clear();
+            Search search = new Search(transpositionTable);
+            search.setOptions(options);
+            search.setThreads(threads);
+            search.setNetwork(network);
+            SearchResult result = search.search(Position.fromFen(fen), SearchLimits.depth(depth));
+            totalNodes += search.getNodes();
+            totalMillis += result.getTimeMillis();
+            System.out.printf("nodes %10d  time %6d ms  bestmove %s  %s%n", search.getNodes(),
+                    result.getTimeMillis(), Move.toString(result.getBestMove()), fen);
+        }
+        System.out.printf("Total: %d nodes in %d ms (%d nps)%n", totalNodes, totalMillis,
+                totalMillis == 0 ? 0 : totalNodes * 1000 / totalMillis);
+    }
+
+    private static Network loadNetwork(String file, boolean vectorised) {
+        try {
+            return Network.load(Path.of(file), vectorised);
+        } catch (IOException e) {
+            System.err.println("Could not load network: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+}
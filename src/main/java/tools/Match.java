@@ -0,0 +1,452 @@
+package tools;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Custom imports
+import bitboard.Bitboards;
+import bitboard.Fen;
+import bitboard.Move;
+import bitboard.Position;
+import engine.Network;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchOptions;
+import engine.SearchResult;
+import engine.Tablebase;
+import engine.TranspositionTable;
+import game.Gameplay;
+import pieces.PieceColour;
+
+public class Match {
+    private static final int DEFAULT_GAMES = 20000;
+    private static final String DEFAULT_TIME_CONTROL = "10+0.1";
+    private static final int HASH_MB = 16;
+
+    // Games still running at this length are drawn, as are positions with
+    // too little material left for either side to mate
+    private static final int MAX_PLIES = 400;
+
+    // Time management, as in UCI mode: plan for this many more moves and keep
+    // a little back so that the clock is not overrun by the move itself
+    private static final int MOVES_TO_GO = 30;
+    private static final long MOVE_OVERHEAD_MILLIS = 5;
+
+    private static final int REPORT_INTERVAL = 50;
+
+    // Results in half points for the engine under test
+    private static final int LOSS = 0;
+    private static final int DRAW = 1;
+    private static final int WIN = 2;
+
+    private final Player test;
+    private final Player base;
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    // Endgame tables for ending games early once the result is known, or null
+    private final Tablebase tablebase;
+
+    private int wins;
+    private int draws;
+    private int losses;
+    private String decision;
+    private volatile boolean stopped;
+
+    private Match(Player test, Player base, double elo0, double elo1, double alpha, double beta, Tablebase tablebase) {
+        this.test = test;
+        this.base = base;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+        this.tablebase = tablebase;
+    }
+
+    private static class Player {
+        // One side's settings: search features, evaluation and clock. A
+        // fixed move time or depth replaces the clock when given
+        private final SearchOptions options = new SearchOptions();
+        private Network network;
+        private String networkFile;
+        private long baseMillis = -1;
+        private long incrementMillis;
+        private long moveTimeMillis = -1;
+        private int depth = -1;
+
+        private boolean hasClock() {
+            return moveTimeMillis < 0 && depth < 0;
+        }
+
+        private SearchLimits limits(long remaining) {
+            if (depth > 0) {
+                return SearchLimits.depth(depth);
+            }
+            if (moveTimeMillis >= 0) {
+                return SearchLimits.moveTime(Math.max(1, moveTimeMillis));
+            }
+            long budget = remaining / MOVES_TO_GO + incrementMillis * 3 / 4;
+            return SearchLimits.moveTime(Math.max(1, Math.min(budget, remaining - MOVE_OVERHEAD_MILLIS)));
+        }
+
+        private Search createSearch(TranspositionTable transpositionTable) {
+            Search search = new Search(transpositionTable);
+            search.setOptions(options);
+            search.setNetwork(network);
+            return search;
+        }
+
+        @Override
+        public String toString() {
+            String control = depth > 0 ? "depth " + depth
+                    : moveTimeMillis >= 0 ? moveTimeMillis + " ms/move"
+                    : baseMillis / 1000.0 + "+" + incrementMillis / 1000.0 + " s";
+            return options + ", " + control + (networkFile == null ? "" : ", network " + networkFile);
+        }
+    }
+
+    private static class Table {
+        // Everything one game in progress needs, reused from game to game: the
+        // board and a single-threaded search with its own hash table per side
+        private final Gameplay gameplay = new Gameplay();
+        private final TranspositionTable testTable = new TranspositionTable(HASH_MB);
+        private final TranspositionTable baseTable = new TranspositionTable(HASH_MB);
+        private final Search testSearch;
+        private final Search baseSearch;
+
+        private Table(Player test, Player base) {
+            this.testSearch = test.createSearch(testTable);
+            this.baseSearch = base.createSearch(baseTable);
+        }
+    }
+
+    public static void main(String[] args) {
+        // Usage: match [--games <n>] [--concurrency <n>] [--openings <file>] [--tc <s>+<inc>]
+        //              [--elo0 <elo>] [--elo1 <elo>] [--alpha <p>] [--beta <p>] [--test <spec>] [--base <spec>]
+        //              [--tablebases <dir>]
+        // Plays the engine under test against the base engine, each opening twice
+        // with colours swapped, until the sequential probability ratio test accepts
+        // one hypothesis (H0: elo <= elo0, H1: elo >= elo1) or the games run out.
+        // A spec is a comma-separated list of no-null-move, no-lmr, no-futility,
+        // no-aspiration, nnue=<file>, tc=<s>+<inc>, movetime=<ms> and depth=<n>.
+        // With tablebases, a game is scored as soon as it reaches an ending
+        // whose result the tables know
+        int games = DEFAULT_GAMES;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        String openingsFile = null;
+        String timeControl = DEFAULT_TIME_CONTROL;
+        String testSpec = "";
+        String baseSpec = "";
+        String tablebaseDirectory = null;
+        double elo0 = 0;
+        double elo1 = 5;
+        double alpha = 0.05;
+        double beta = 0.05;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--games" -> games = Integer.parseInt(args[++i]);
+                    case "--concurrency" -> concurrency = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--openings" -> openingsFile = args[++i];
+                    case "--tc" -> timeControl = args[++i];
+                    case "--elo0" -> elo0 = Double.parseDouble(args[++i]);
+                    case "--elo1" -> elo1 = Double.parseDouble(args[++i]);
+                    case "--alpha" -> alpha = Double.parseDouble(args[++i]);
+                    case "--beta" -> beta = Double.parseDouble(args[++i]);
+                    case "--test" -> testSpec = args[++i];
+                    case "--base" -> baseSpec = args[++i];
+                    case "--tablebases" -> tablebaseDirectory = args[++i];
+                    default -> throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+                throw new IllegalArgumentException("need elo0 < elo1 and alpha, beta between 0 and 1");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: match [--games <n>] [--concurrency <n>] [--openings <file>] [--tc <s>+<inc>]"
+                    + " [--elo0 <elo>] [--elo1 <elo>] [--alpha <p>] [--beta <p>] [--test <spec>] [--base <spec>]"
+                    + " [--tablebases <dir>]");
+            System.exit(2);
+        }
+
+        Player test = parsePlayer(timeControl, testSpec);
+        Player base = parsePlayer(timeControl, baseSpec);
+        List<String> openings = openingsFile == null ? List.of(Fen.START) : loadOpenings(openingsFile);
+        Tablebase tablebase = tablebaseDirectory == null ? null : loadTablebase(tablebaseDirectory);
+        System.out.println("Test: " + test);
+        System.out.println("Base: " + base);
+        System.out.printf("SPRT: elo0 %.1f, elo1 %.1f, alpha %.3f, beta %.3f; %d openings, %d games at most, %d at a time%n",
+                elo0, elo1, alpha, beta, openings.size(), games, concurrency);
+        new Match(test, base, elo0, elo1, alpha, beta, tablebase).run(openings, games, concurrency);
+    }
+
+    private static Player parsePlayer(String timeControl, String spec) {
+        Player player = new Player();
+        setTimeControl(player, timeControl);
+        for (String item : spec.split(",")) {
+            String key = item.contains("=") ? item.substring(0, item.indexOf('=')).trim() : item.trim();
+            String value = item.contains("=") ? item.substring(item.indexOf('=') + 1).trim() : "";
+            switch (key) {
+                case "" -> {
+                }
+                case "no-null-move" -> player.options.setNullMovePruning(false);
+                case "no-lmr" -> player.options.setLateMoveReductions(false);
+                case "no-futility" -> player.options.setFutilityPruning(false);
+                case "no-aspiration" -> player.options.setAspirationWindows(false);
+                case "nnue" -> {
+                    player.networkFile = value;
+                    player.network = loadNetwork(value);
+                }
+                case "tc" -> setTimeControl(player, value);
+                case "movetime" -> player.moveTimeMillis = Long.parseLong(value);
+                case "depth" -> player.depth = Integer.parseInt(value);
+                default -> {
+                    System.err.println("Unknown engine setting: " + item);
+                    System.exit(2);
+                }
+            }
+        }
+        return player;
+    }
+
+    private static void setTimeControl(Player player, String timeControl) {
+        // Seconds for the game plus seconds added per move, e.g. "10+0.1"
+        int plus = timeControl.indexOf('+');
+        double seconds = Double.parseDouble(plus < 0 ? timeControl : timeControl.substring(0, plus));
+        double increment = plus < 0 ? 0 : Double.parseDouble(timeControl.substring(plus + 1));
+        player.baseMillis = Math.round(seconds * 1000);
+        player.incrementMillis = Math.round(increment * 1000);
+    }
+
+    private static Network loadNetwork(String file) {
+        try {
+            return Network.load(Path.of(file));
+        } catch (IOException e) {
+            System.err.println("Could not load network: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static Tablebase loadTablebase(String directory) {
+        try {
+            Tablebase tablebase = Tablebase.open(Path.of(directory));
+            System.out.println("Tablebases: " + tablebase.getTableCount() + " tables, up to "
+                    + tablebase.getMaxPieces() + " pieces");
+            return tablebase;
+        } catch (IOException e) {
+            System.err.println("Could not load tablebases: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static List<String> loadOpenings(String file) {
+        // One position per line, as FEN or EPD (whose operations after the
+        // fourth field are dropped); blank lines and '#' comments are skipped
+        List<String> openings = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(Path.of(file))) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 4 || fields[0].startsWith("#")) {
+                    continue;
+                }
+                boolean clocks = fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+");
+                String fen = String.join(" ", List.of(fields).subList(0, clocks ? 6 : 4));
+                Fen.parse(fen);
+                openings.add(fen);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not read openings: " + e.getMessage());
+            System.exit(1);
+        }
+        if (openings.isEmpty()) {
+            System.err.println("No positions in " + file);
+            System.exit(1);
+        }
+        return openings;
+    }
+
+    private void run(List<String> openings, int games, int concurrency) {
+        // Every game gets a virtual thread, and a free table to play on; waiting
+        // for a table is what keeps no more than one game per core running
+        BlockingQueue<Table> tables = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Table table = new Table(test, base);
+            table.gameplay.setTablebase(tablebase);
+            tables.add(table);
+        }
+        long start = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int game = 0; game < games && !stopped; game++) {
+                Table table;
+                try {
+                    table = tables.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                String opening = openings.get(game / 2 % openings.size());
+                boolean testIsWhite = game % 2 == 0;
+                pool.execute(() -> {
+                    try {
+                        record(play(table, opening, testIsWhite));
+                    } finally {
+                        tables.add(table);
+                    }
+                });
+            }
+        }
+
+        if ((wins + draws + losses) % REPORT_INTERVAL != 0) {
+            report();
+        }
+        System.out.printf("%s after %.0f s%n", decision == null ? "No decision" : decision,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    private int play(Table table, String opening, boolean testIsWhite) {
+        // One game to the end, returning the engine under test's half points
+        Gameplay gameplay = table.gameplay;
+        gameplay.loadPosition(opening);
+        table.testTable.clear();
+        table.baseTable.clear();
+        Player[] players = testIsWhite ? new Player[] {test, base} : new Player[] {base, test};
+        Search[] searches = testIsWhite
+                ? new Search[] {table.testSearch, table.baseSearch}
+                : new Search[] {table.baseSearch, table.testSearch};
+        long[] clocks = {players[Bitboards.WHITE].baseMillis, players[Bitboards.BLACK].baseMillis};
+        int testColour = testIsWhite ? Bitboards.WHITE : Bitboards.BLACK;
+
+        for (int ply = 0; ; ply++) {
+            Position position = gameplay.getBoard().getPosition();
+            int side = position.getSideToMove();
+            PieceColour colour = gameplay.getCurrentPlayerColour();
+            if (gameplay.isCheckmate(colour)) {
+                return side == testColour ? LOSS : WIN;
+            }
+            if (gameplay.isStalemate(colour) || position.getHalfmoveClock() >= 100 || position.isThreefoldRepetition()
+                || isInsufficientMaterial(position) || ply >= MAX_PLIES || gameplay.isTablebaseDraw()) {
+                return DRAW;
+            }
+            if (gameplay.isTablebaseWin(colour)) {
+                return side == testColour ? WIN : LOSS;
+            }
+            if (gameplay.isTablebaseWin(Bitboards.pieceColour(side ^ 1))) {
+                return side == testColour ? LOSS : WIN;
+            }
+
+            Player player = players[side];
+            long started = System.nanoTime();
+            SearchResult result = searches[side].search(gameplay.getPositionCopy(), player.limits(clocks[side]));
+            long spent = (System.nanoTime() - started) / 1_000_000;
+            if (player.hasClock()) {
+                clocks[side] -= spent;
+                if (clocks[side] < 0) {
+                    // Lost on time
+                    return side == testColour ? LOSS : WIN;
+                }
+                clocks[side] += player.incrementMillis;
+            }
+            if (result.getBestMove() == Move.NONE) {
+                throw new IllegalStateException("No move from engine in " + Fen.format(position));
+            }
+            gameplay.makeMove(result.getBestMove());
+        }
+    }
+
+    private static boolean isInsufficientMaterial(Position position) {
+        // Bare kings, or a single knight or bishop against a bare king
+        for (int colour = Bitboards.WHITE; colour <= Bitboards.BLACK; colour++) {
+            if ((position.getPieces(colour, Bitboards.PAWN) | position.getPieces(colour, Bitboards.ROOK)
+                | position.getPieces(colour, Bitboards.QUEEN)) != 0) {
+                return false;
+            }
+        }
+        long minors = 0;
+        for (int colour = Bitboards.WHITE; colour <= Bitboards.BLACK; colour++) {
+            minors |= position.getPieces(colour, Bitboards.KNIGHT) | position.getPieces(colour, Bitboards.BISHOP);
+        }
+        return Long.bitCount(minors) <= 1;
+    }
+
+    private synchronized void record(int points) {
+        if (points == WIN) {
+            wins++;
+        } else if (points == DRAW) {
+            draws++;
+        } else {
+            losses++;
+        }
+
+        // Stop handing out games once the test has reached a decision; games
+        // already under way still finish and are counted
+        double llr = logLikelihoodRatio();
+        if (decision == null && llr >= upperBound) {
+            decision = "H1 accepted (elo >= " + elo1 + ")";
+            stopped = true;
+        } else if (decision == null && llr <= lowerBound) {
+            decision = "H0 accepted (elo <= " + elo0 + ")";
+            stopped = true;
+        }
+        if ((wins + draws + losses) % REPORT_INTERVAL == 0) {
+            report();
+        }
+    }
+
+    private synchronized void report() {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return;
+        }
+        double score = (wins + draws / 2.0) / games;
+        double error = 1.96 * Math.sqrt(variance(score) / games);
+        double elo = elo(score);
+        double margin = (elo(Math.min(score + error, 1)) - elo(Math.max(score - error, 0))) / 2;
+        System.out.printf("Games %d: +%d =%d -%d, score %.1f%%, elo %.1f +/- %.1f, LLR %.2f [%.2f, %.2f]%n",
+                games, wins, draws, losses, score * 100, elo, margin, logLikelihoodRatio(), lowerBound, upperBound);
+    }
+
+    private double logLikelihoodRatio() {
+        // Generalised SPRT with the normal approximation to the trinomial
+        // result distribution: each hypothesis fixes the expected score, and
+        // the observed per-game variance stands in for both. Half a game of
+        // each result is added so that a one-sided run, which has no variance
+        // at all, still moves the ratio
+        double w = wins + 0.5;
+        double d = draws + 0.5;
+        double l = losses + 0.5;
+        double games = w + d + l;
+        double score = (w + d / 2) / games;
+        double variance = (w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score) / games;
+        double score0 = expectedScore(elo0);
+        double score1 = expectedScore(elo1);
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+    private double variance(double score) {
+        // Per-game variance of the result around the mean score
+        int games = wins + draws + losses;
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / games;
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        // Logistic Elo difference for a score, capped for a clean sweep either way
+        double clamped = Math.min(Math.max(score, 1e-3), 1 - 1e-3);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+}
@@ -0,0 +1,217 @@
+package tools;
+
+// Standard imports
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Custom imports
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+import bitboard.Position;
+
+public class Perft {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String SUITE_RESOURCE = "/perft/standard.epd";
+
+    public static long perft(Position position, int depth) {
+        // Count the leaf nodes of the legal move tree below this position, with
+        // one move buffer per remaining depth allocated up front
+        MoveList[] moveLists = new MoveList[Math.max(depth, 1)];
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+        return perft(position, depth, moveLists);
+    }
+
+    private static long perft(Position position, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = moveLists[depth - 1];
+        MoveGenerator.generateLegalMoves(position, moves);
+        if (depth == 1) {
+            // Bulk count: no need to play the final ply
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move);
+            nodes += perft(position, depth - 1, moveLists);
+            position.unmakeMove(move);
+        }
+        return nodes;
+    }
+
+    public static long parallelPerft(Position position, int depth, ForkJoinPool pool) {
+        // Split the root moves into one fork-join task each
+        if (depth <= 1) {
+            return perft(position, depth);
+        }
+        return pool.invoke(new RootTask(position, depth));
+    }
+
+    private static class RootTask extends RecursiveTask<Long> {
+        private final Position position;
+        private final int depth;
+
+        RootTask(Position position, int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            // Fork a subtree task for every root move, each on its own copy of the position, then join them all
+            List<RecursiveTask<Long>> subtrees = new ArrayList<>();
+            MoveList moves = MoveGenerator.generateLegalMoves(position);
+            for (int i = 0; i < moves.size(); i++) {
+                Position child = new Position(position);
+                child.makeMove(moves.get(i));
+                RecursiveTask<Long> subtree = new RecursiveTask<>() {
+                    @Override
+                    protected Long compute() {
+                        return perft(child, depth - 1);
+                    }
+                };
+                subtree.fork();
+                subtrees.add(subtree);
+            }
+
+            long nodes = 0;
+            for (RecursiveTask<Long> subtree : subtrees) {
+                nodes += subtree.join();
+            }
+            return nodes;
+        }
+    }
+
+    public static void divide(Position position, int depth) {
+        // Print the node count below each root move, which makes it easy to
+        // narrow a wrong total down against another engine
+        long total = 0;
+        MoveList moves = MoveGenerator.generateLegalMoves(position);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move);
+            long nodes = perft(position, depth - 1);
+            position.unmakeMove(move);
+            System.out.println(Move.toString(move) + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println("Total: " + total);
+    }
+
+    public static void main(String[] args) {
+        // Usage: perft [--parallel] [--divide] <depth> [fen]
+        //        perft [--parallel] --suite [max depth]
+        boolean parallel = false;
+        boolean divide = false;
+        boolean suite = false;
+        int index = 0;
+        while (index < args.length && args[index].startsWith("--")) {
+            switch (args[index]) {
+                case "--parallel" -> parallel = true;
+                case "--divide" -> divide = true;
+                case "--suite" -> suite = true;
+                default -> {
+                    System.err.println("Unknown option " + args[index]);
+                    System.exit(2);
+                }
+            }
+            index++;
+        }
+
+        ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+        if (suite) {
+            int maxDepth = index < args.length ? Integer.parseInt(args[index]) : 5;
+            System.exit(runSuite(maxDepth, pool) ? 0 : 1);
+        }
+
+        if (index >= args.length) {
+            System.err.println("Usage: perft [--parallel] [--divide] <depth> [fen]");
+            System.err.println("       perft [--parallel] --suite [max depth]");
+            System.exit(2);
+        }
+        int depth = Integer.parseInt(args[index++]);
+        String fen = index < args.length ? String.join(" ", List.of(args).subList(index, args.length)) : START_FEN;
+        Position position = Position.fromFen(fen);
+
+        if (divide) {
+            divide(position, depth);
+        } else {
+            report(fen, depth, position, pool, -1);
+        }
+    }
+
+    private static boolean runSuite(int maxDepth, ForkJoinPool pool) {
+        // Each line of the suite is "<fen> ;D1 <count> ;D2 <count> ..."
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (String line : readSuite()) {
+            String[] fields = line.split(";");
+            String fen = fields[0].trim();
+            for (int i = 1; i < fields.length; i++) {
+                String[] entry = fields[i].trim().split("\\s+");
+                int depth = Integer.parseInt(entry[0].substring(1));
+                if (depth > maxDepth) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                long nodes = report(fen, depth, Position.fromFen(fen), pool, Long.parseLong(entry[1]));
+                totalNanos += System.nanoTime() - start;
+                totalNodes += nodes;
+                passed &= nodes == Long.parseLong(entry[1]);
+            }
+        }
+        System.out.printf("%s: %d nodes in %d ms (%d nps)%n", passed ? "PASSED" : "FAILED",
+                totalNodes, totalNanos / 1_000_000, nodesPerSecond(totalNodes, totalNanos));
+        return passed;
+    }
+
+    private static long report(String fen, int depth, Position position, ForkJoinPool pool, long expected) {
+        // Run one perft and print its count and speed, flagging mismatches when a count is known
+        long start = System.nanoTime();
+        long nodes = pool != null ? parallelPerft(position, depth, pool) : perft(position, depth);
+        long elapsed = System.nanoTime() - start;
+
+        String status = expected < 0 ? "" : (nodes == expected ? "  ok" : "  MISMATCH (expected " + expected + ")");
+        System.out.printf("depth %d  nodes %d  time %d ms  nps %d  %s%s%n", depth, nodes,
+                elapsed / 1_000_000, nodesPerSecond(nodes, elapsed), fen, status);
+        return nodes;
+    }
+
+    private static long nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    private static List<String> readSuite() {
+        // Load the bundled reference positions, skipping blank lines and comments
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = Perft.class.getResourceAsStream(SUITE_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing perft suite " + SUITE_RESOURCE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read perft suite", e);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,231 @@
+package tools;
+
+// Standard imports
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Custom imports
+import bitboard.Bitboards;
+import bitboard.Fen;
+import bitboard.Move;
+import bitboard.Position;
+import bitboard.San;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.TranspositionTable;
+
+public class PgnAnalyse {
+    private static final int DEFAULT_DEPTH = 6;
+    private static final int HASH_MB = 16;
+
+    // Games read ahead of the workers; reading blocks beyond this, which is
+    // what keeps memory flat however large the archive
+    private static final int QUEUED_GAMES_PER_THREAD = 4;
+
+    private final int depth;
+    private final boolean evaluate;
+    private final Writer output;
+
+    // One search per worker thread, each with its own hash table
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(new TranspositionTable(HASH_MB)));
+
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong plies = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private PgnAnalyse(int depth, boolean evaluate, Writer output) {
+        this.depth = depth;
+        this.evaluate = evaluate;
+        this.output = output;
+    }
+
+    public static void main(String[] args) {
+        // Usage: pgn [--threads <n>] [--depth <n>] [--no-eval] [--output <file>] <file.pgn>...
+        // Writes one JSON object per game: its tags and, for every move, the
+        // move played, the engine's score for the position it was played from
+        // (centipawns from white's point of view) and the move it preferred
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = DEFAULT_DEPTH;
+        boolean evaluate = true;
+        String outputFile = null;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                case "--depth" -> depth = Integer.parseInt(args[++i]);
+                case "--no-eval" -> evaluate = false;
+                case "--output" -> outputFile = args[++i];
+                default -> files.add(Path.of(args[i]));
+            }
+        }
+        if (files.isEmpty() || files.stream().anyMatch(file -> file.toString().startsWith("--"))) {
+            System.err.println("Usage: pgn [--threads <n>] [--depth <n>] [--no-eval] [--output <file>] <file.pgn>...");
+            System.exit(2);
+        }
+
+        try (Writer output = new BufferedWriter(outputFile == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(Path.of(outputFile), StandardCharsets.UTF_8))) {
+            new PgnAnalyse(depth, evaluate, output).run(files, threads);
+        } catch (IOException e) {
+            System.err.println("PGN analysis failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void run(List<Path> files, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore queued = new Semaphore(threads * QUEUED_GAMES_PER_THREAD);
+        long start = System.nanoTime();
+        try {
+            for (Path file : files) {
+                try (PgnReader reader = new PgnReader(file)) {
+                    PgnReader.Game game;
+                    while ((game = reader.next()) != null) {
+                        queued.acquireUninterruptibly();
+                        String source = file.getFileName().toString();
+                        PgnReader.Game current = game;
+                        pool.execute(() -> {
+                            try {
+                                write(analyse(source, current));
+                            } catch (RuntimeException e) {
+                                // One broken game should not end the whole batch
+                                errors.incrementAndGet();
+                                write(failure(source, current, e));
+                            } finally {
+                                queued.release();
+                            }
+                        });
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d games, %d moves, %d errors in %.1f s (%.1f games/s)%n", games.get(), plies.get(),
+                errors.get(), seconds, seconds == 0 ? 0 : games.get() / seconds);
+    }
+
+    private String analyse(String source, PgnReader.Game game) {
+        // Replay the game, checking every move for legality as it goes
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"file\":");
+        appendString(json, source);
+        json.append(",\"game\":").append(game.getNumber());
+        for (String tag : new String[] {"Event", "White", "Black", "Result"}) {
+            if (game.getTag(tag) != null) {
+                json.append(",\"").append(Character.toLowerCase(tag.charAt(0))).append(tag.substring(1)).append("\":");
+                appendString(json, game.getTag(tag));
+            }
+        }
+
+        Position position;
+        try {
+            position = game.getTag("FEN") != null ? Fen.parse(game.getTag("FEN")) : Fen.parse(Fen.START);
+        } catch (IllegalArgumentException e) {
+            errors.incrementAndGet();
+            json.append(",\"error\":");
+            appendString(json, e.getMessage());
+            return json.append('}').toString();
+        }
+
+        Search search = evaluate ? searches.get() : null;
+        String error = null;
+        json.append(",\"moves\":[");
+        List<String> moves = game.getMoves();
+        int ply = 0;
+        for (; ply < moves.size(); ply++) {
+            String san = moves.get(ply);
+            int move = San.parse(position, san);
+            if (move == Move.NONE) {
+                error = "illegal move " + position.getFullmoveNumber() + (position.getSideToMove() == Bitboards.WHITE ? ". " : "... ") + san;
+                break;
+            }
+            json.append(ply == 0 ? "" : ",").append("{\"san\":");
+            appendString(json, san);
+            if (evaluate) {
+                SearchResult result = search.search(position, SearchLimits.depth(depth));
+                int score = position.getSideToMove() == Bitboards.WHITE ? result.getScore() : -result.getScore();
+                json.append(result.isMateScore() ? ",\"mate\":" : ",\"score\":")
+                    .append(result.isMateScore() ? Search.mateDistance(score) : score);
+                json.append(",\"best\":");
+                appendString(json, San.format(position, result.getBestMove()));
+            }
+            json.append('}');
+            position.makeMove(move);
+        }
+        json.append(']');
+
+        games.incrementAndGet();
+        plies.addAndGet(ply);
+        if (error != null) {
+            errors.incrementAndGet();
+            json.append(",\"error\":");
+            appendString(json, error);
+        }
+        json.append(",\"fen\":");
+        appendString(json, Fen.format(position));
+        return json.append('}').toString();
+    }
+
+    private static String failure(String source, PgnReader.Game game, RuntimeException e) {
+        StringBuilder json = new StringBuilder("{\"file\":");
+        appendString(json, source);
+        json.append(",\"game\":").append(game.getNumber()).append(",\"error\":");
+        appendString(json, e.toString());
+        return json.append('}').toString();
+    }
+
+    private void write(String line) {
+        synchronized (output) {
+            try {
+                output.write(line);
+                output.write('\n');
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write results", e);
+            }
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
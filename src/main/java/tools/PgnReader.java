@@ -0,0 +1,196 @@
+package tools;
+
+// Standard imports
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PgnReader implements Closeable {
+    // Reads games one at a time from a memory-mapped PGN file. The file is
+    // mapped a window at a time and only the current line and game are ever
+    // held on the heap, so memory use does not grow with the size of the file.
+    private static final long WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    // The current line, reused between lines, and a tag line that already
+    // belongs to the next game
+    private byte[] line = new byte[256];
+    private String pendingLine;
+    private int gamesRead;
+
+    public PgnReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowStart = 0;
+        this.window = map(0);
+    }
+
+    public static class Game {
+        private final int number;
+        private final Map<String, String> tags;
+        private final String movetext;
+
+        Game(int number, Map<String, String> tags, String movetext) {
+            this.number = number;
+            this.tags = tags;
+            this.movetext = movetext;
+        }
+
+        public int getNumber() {
+            // Position of the game in its file, from 1
+            return this.number;
+        }
+
+        public String getTag(String name) {
+            return tags.get(name);
+        }
+
+        public List<String> getMoves() {
+            // The main line's moves in SAN, without move numbers, comments,
+            // variations, annotation glyphs or the result
+            List<String> moves = new ArrayList<>();
+            int length = movetext.length();
+            int i = 0;
+            while (i < length) {
+                char c = movetext.charAt(i);
+                if (c == '{') {
+                    int close = movetext.indexOf('}', i);
+                    i = close < 0 ? length : close + 1;
+                } else if (c == ';') {
+                    int close = movetext.indexOf('\n', i);
+                    i = close < 0 ? length : close + 1;
+                } else if (c == '(') {
+                    // Variations may nest
+                    int depth = 0;
+                    for (; i < length; i++) {
+                        char v = movetext.charAt(i);
+                        if (v == '{') {
+                            int close = movetext.indexOf('}', i);
+                            i = close < 0 ? length - 1 : close;
+                        } else if (v == '(') {
+                            depth++;
+                        } else if (v == ')' && --depth == 0) {
+                            break;
+                        }
+                    }
+                    i++;
+                } else if (Character.isWhitespace(c) || c == ')') {
+                    i++;
+                } else {
+                    int start = i;
+                    while (i < length && !Character.isWhitespace(movetext.charAt(i)) && "{;()".indexOf(movetext.charAt(i)) < 0) {
+                        i++;
+                    }
+                    String token = movetext.substring(start, i);
+
+                    // "12." and "12..." may be glued to the move that follows
+                    int dot = token.lastIndexOf('.');
+                    if (dot >= 0) {
+                        token = token.substring(dot + 1);
+                    }
+                    if (token.isEmpty() || token.charAt(0) == '$') {
+                        continue;
+                    }
+                    if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+                        break;
+                    }
+                    moves.add(token);
+                }
+            }
+            return moves;
+        }
+    }
+
+    public Game next() throws IOException {
+        // The next game in the file, or null at the end. A game ends where the
+        // next one's tags begin, so the first tag line read is kept for it
+        Map<String, String> tags = new LinkedHashMap<>();
+        StringBuilder movetext = new StringBuilder();
+        String text = pendingLine;
+        pendingLine = null;
+        if (text == null) {
+            text = readLine();
+        }
+        for (; text != null; text = readLine()) {
+            if (text.startsWith("[")) {
+                if (movetext.length() > 0) {
+                    pendingLine = text;
+                    break;
+                }
+                addTag(tags, text);
+            } else if (!text.startsWith("%") && !text.isBlank()) {
+                movetext.append(text).append('\n');
+            }
+        }
+        if (tags.isEmpty() && movetext.length() == 0) {
+            return null;
+        }
+        return new Game(++gamesRead, tags, movetext.toString());
+    }
+
+    private static void addTag(Map<String, String> tags, String text) {
+        // [Name "Value"], with \" and \\ escapes inside the value
+        int space = text.indexOf(' ');
+        int open = text.indexOf('"');
+        int close = text.lastIndexOf('"');
+        if (space < 0 || open < 0 || close <= open) {
+            return;
+        }
+        String value = text.substring(open + 1, close).replace("\\\"", "\"").replace("\\\\", "\\");
+        tags.put(text.substring(1, space), value);
+    }
+
+    private String readLine() throws IOException {
+        // Next line without its terminator, or null at the end of the file
+        int length = 0;
+        boolean any = false;
+        while (true) {
+            if (!window.hasRemaining()) {
+                long next = windowStart + window.capacity();
+                if (next >= size) {
+                    break;
+                }
+                windowStart = next;
+                window = map(next);
+            }
+            byte b = window.get();
+            any = true;
+            if (b == '\n') {
+                break;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+        if (!any) {
+            return null;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer map(long position) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, size - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,118 @@
+package tools;
+
+// Standard imports
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Custom imports
+import engine.Endgame;
+import engine.Tablebase;
+import engine.TablebaseGenerator;
+
+public class Tablebases {
+    private static final String DEFAULT_DIRECTORY = "tablebases";
+
+    public static void main(String[] args) {
+        // Usage: tbgen [--threads <n>] [--output <dir>] [<ending>...]
+        // Makes the tables for the given endings (all three and four piece
+        // endings by default), plus any smaller ones they need that are not in
+        // the directory yet. Tables that need nothing from each other are made
+        // at the same time, one per thread
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path directory = Path.of(DEFAULT_DIRECTORY);
+        List<Endgame> requested = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads" -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                    case "--output" -> directory = Path.of(args[++i]);
+                    default -> requested.add(Endgame.of(args[i]));
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: tbgen [--threads <n>] [--output <dir>] [<ending>...]");
+            System.exit(2);
+        }
+        if (requested.isEmpty()) {
+            requested = Endgame.all();
+        }
+
+        try {
+            Files.createDirectories(directory);
+            Tablebase existing = Tablebase.open(directory);
+            List<Endgame> endgames = new ArrayList<>();
+            for (Endgame endgame : requested) {
+                addWithSubEndgames(endgame, existing, endgames, true);
+            }
+            generate(endgames, directory, threads);
+        } catch (IOException e) {
+            System.err.println("Could not make tablebases: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void addWithSubEndgames(Endgame endgame, Tablebase existing, List<Endgame> endgames, boolean requested) {
+        // Endings already listed or (unless asked for) already made are left out
+        if (endgames.stream().anyMatch(other -> other.getName().equals(endgame.getName()))
+                || (!requested && existing.contains(endgame))) {
+            return;
+        }
+        for (Endgame subEndgame : endgame.getSubEndgames()) {
+            addWithSubEndgames(subEndgame, existing, endgames, false);
+        }
+        endgames.add(endgame);
+    }
+
+    private static void generate(List<Endgame> endgames, Path directory, int threads) throws IOException {
+        // Endings with the same numbers of pieces and pawns never lead to one
+        // another, so each such group is made together once the smaller ones
+        // are done and reopened
+        Map<Integer, List<Endgame>> levels = new LinkedHashMap<>();
+        endgames.stream()
+                .sorted((a, b) -> a.getPieceCount() != b.getPieceCount() ? a.getPieceCount() - b.getPieceCount()
+                        : a.getPawnCount() - b.getPawnCount())
+                .forEach(endgame -> levels.computeIfAbsent(endgame.getPieceCount() * 8 + endgame.getPawnCount(),
+                        level -> new ArrayList<>()).add(endgame));
+
+        System.out.println("Making " + endgames.size() + " tables in " + directory + " with " + threads + " threads");
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (List<Endgame> level : levels.values()) {
+                Tablebase subtables = Tablebase.open(directory);
+                List<Future<String>> results = new ArrayList<>();
+                for (Endgame endgame : level) {
+                    results.add(executor.submit(() -> generate(endgame, subtables, directory)));
+                }
+                for (Future<String> result : results) {
+                    System.out.println(result.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private static String generate(Endgame endgame, Tablebase subtables, Path directory) throws IOException {
+        long start = System.nanoTime();
+        TablebaseGenerator generator = new TablebaseGenerator(endgame, subtables);
+        generator.generate();
+        generator.write(directory.resolve(endgame.getName() + ".tb"));
+        return String.format("%-8s %s (%.1f s)", endgame, generator.getSummary(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,416 @@
+package tools;
+
+// Standard imports
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Custom imports
+import bitboard.Bitboards;
+import bitboard.Move;
+import bitboard.MoveGenerator;
+import bitboard.MoveList;
+import bitboard.Position;
+import engine.Network;
+import engine.OpeningBook;
+import engine.Search;
+import engine.SearchLimits;
+import engine.SearchResult;
+import engine.Tablebase;
+import engine.TranspositionTable;
+
+public class Uci {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String NAME = "Chess-AI";
+    private static final String AUTHOR = "Ronan Peacock";
+
+    private static final int DEFAULT_HASH_MB = 16;
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+
+    // Time management: without "movestogo", plan for this many more moves,
+    // and always keep a little back for the GUI and the pipe
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final long MOVE_OVERHEAD_MILLIS = 50;
+
+    private int hashMb = DEFAULT_HASH_MB;
+    private int threads = 1;
+    private Network network;
+    private OpeningBook openingBook;
+    private boolean ownBook;
+    private Tablebase tablebase;
+
+    // Created on first use rather than at startup, so that a GUI spawning the
+    // engine per game only pays for the hash table once it asks for a search
+    private Search search;
+    private TranspositionTable transpositionTable;
+
+    private Position position = Position.fromFen(START_FEN);
+
+    // The running search, if any. While pondering or in infinite mode the
+    // result is held back until the GUI says "stop" or "ponderhit"
+    private Thread searchThread;
+    private boolean holdResult;
+    private long ponderMoveTime;
+    private int searchGeneration;
+
+    public static void main(String[] args) {
+        try {
+            new Uci().run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            System.err.println("Could not read input: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void run(BufferedReader in) throws IOException {
+        // One command per line until "quit" or the end of input
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+");
+            switch (tokens[0]) {
+                case "uci" -> identify();
+                case "isready" -> {
+                    ensureSearch();
+                    send("readyok");
+                }
+                case "setoption" -> setOption(tokens);
+                case "ucinewgame" -> {
+                    stopSearch();
+                    ensureSearch();
+                    transpositionTable.clear();
+                }
+                case "position" -> {
+                    stopSearch();
+                    setPosition(tokens);
+                }
+                case "go" -> go(tokens);
+                case "stop" -> stopSearch();
+                case "ponderhit" -> ponderhit();
+                case "quit" -> {
+                    stopSearch();
+                    return;
+                }
+                default -> {
+                    // Unknown commands are ignored, as the protocol asks
+                }
+            }
+        }
+        stopSearch();
+    }
+
+    private void identify() {
+        send("id name " + NAME);
+        send("id author " + AUTHOR);
+        send("option name Hash type spin default " + DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+        send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+        send("option name Ponder type check default false");
+        send("option name EvalFile type string default <empty>");
+        send("option name OwnBook type check default false");
+        send("option name BookFile type string default <empty>");
+        send("option name TablebasePath type string default <empty>");
+        send("uciok");
+    }
+
+    private void setOption(String[] tokens) {
+        // setoption name <id> [value <x>], where the name itself may contain spaces
+        StringBuilder name = new StringBuilder();
+        String value = "";
+        int i = 1;
+        if (i < tokens.length && tokens[i].equals("name")) {
+            i++;
+        }
+        while (i < tokens.length && !tokens[i].equals("value")) {
+            name.append(name.length() == 0 ? "" : " ").append(tokens[i++]);
+        }
+        if (i < tokens.length) {
+            value = String.join(" ", Arrays.copyOfRange(tokens, i + 1, tokens.length));
+        }
+
+        stopSearch();
+        switch (name.toString().toLowerCase()) {
+            case "hash" -> {
+                hashMb = clamp(parseInt(value, DEFAULT_HASH_MB), 1, MAX_HASH_MB);
+                search = null;
+            }
+            case "threads" -> {
+                threads = clamp(parseInt(value, 1), 1, MAX_THREADS);
+                if (search != null) {
+                    search.setThreads(threads);
+                }
+            }
+            case "evalfile" -> {
+                network = null;
+                if (!value.isEmpty() && !value.equals("<empty>")) {
+                    try {
+                        network = Network.load(Path.of(value));
+                        send("info string network " + value + " (" + network.getKernelName() + ")");
+                    } catch (IOException e) {
+                        send("info string could not load network: " + e.getMessage());
+                    }
+                }
+                if (search != null) {
+                    search.setNetwork(network);
+                }
+            }
+            case "ownbook" -> ownBook = value.equalsIgnoreCase("true");
+            case "bookfile" -> {
+                openingBook = null;
+                if (!value.isEmpty() && !value.equals("<empty>")) {
+                    try {
+                        openingBook = OpeningBook.open(Path.of(value));
+                        send("info string book " + value + " (" + openingBook.getEntryCount() + " entries)");
+                    } catch (IOException e) {
+                        send("info string could not load book: " + e.getMessage());
+                    }
+                }
+            }
+            case "tablebasepath" -> {
+                tablebase = null;
+                if (!value.isEmpty() && !value.equals("<empty>")) {
+                    try {
+                        tablebase = Tablebase.open(Path.of(value));
+                        send("info string tablebases " + value + " (" + tablebase.getTableCount() + " tables, up to "
+                                + tablebase.getMaxPieces() + " pieces)");
+                    } catch (IOException e) {
+                        send("info string could not load tablebases: " + e.getMessage());
+                    }
+                }
+                if (search != null) {
+                    search.setTablebase(tablebase);
+                }
+            }
+            default -> {
+                // Ponder needs no setting up, and unknown options are ignored
+            }
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        // position (startpos | fen <six fields>) [moves <move>...]
+        int i = 1;
+        Position next;
+        if (i < tokens.length && tokens[i].equals("startpos")) {
+            next = Position.fromFen(START_FEN);
+            i++;
+        } else if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            i++;
+            while (i < tokens.length && !tokens[i].equals("moves")) {
+                fen.append(fen.length() == 0 ? "" : " ").append(tokens[i++]);
+            }
+            try {
+                next = Position.fromFen(fen.toString());
+            } catch (RuntimeException e) {
+                send("info string invalid fen: " + fen);
+                return;
+            }
+        } else {
+            return;
+        }
+
+        // The moves are played rather than skipped, so the position keeps the
+        // history that repetition detection needs
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = parseMove(next, tokens[i]);
+                if (move == Move.NONE) {
+                    send("info string illegal move: " + tokens[i]);
+                    break;
+                }
+                next.makeMove(move);
+            }
+        }
+        position = next;
+    }
+
+    private static int parseMove(Position position, String text) {
+        // Long algebraic notation, matched against the legal moves
+        MoveList moves = MoveGenerator.generateLegalMoves(position);
+        for (int i = 0; i < moves.size(); i++) {
+            if (Move.toString(moves.get(i)).equals(text)) {
+                return moves.get(i);
+            }
+        }
+        return Move.NONE;
+    }
+
+    private void go(String[] tokens) {
+        stopSearch();
+        ensureSearch();
+
+        int depth = Integer.MAX_VALUE;
+        long moveTime = Long.MAX_VALUE;
+        long whiteTime = -1;
+        long blackTime = -1;
+        long whiteIncrement = 0;
+        long blackIncrement = 0;
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean infinite = false;
+        boolean ponder = false;
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "depth" -> depth = parseInt(argument(tokens, ++i), depth);
+                case "movetime" -> moveTime = parseLong(argument(tokens, ++i), moveTime);
+                case "wtime" -> whiteTime = parseLong(argument(tokens, ++i), whiteTime);
+                case "btime" -> blackTime = parseLong(argument(tokens, ++i), blackTime);
+                case "winc" -> whiteIncrement = parseLong(argument(tokens, ++i), 0);
+                case "binc" -> blackIncrement = parseLong(argument(tokens, ++i), 0);
+                case "movestogo" -> movesToGo = Math.max(1, parseInt(argument(tokens, ++i), movesToGo));
+                case "infinite" -> infinite = true;
+                case "ponder" -> ponder = true;
+                default -> {
+                    // nodes, mate and searchmoves are not supported
+                }
+            }
+        }
+
+        // While the game is still in the book, answer at once without searching
+        if (ownBook && openingBook != null && !ponder && !infinite) {
+            int bookMove = openingBook.pickWeighted(position);
+            if (bookMove != Move.NONE) {
+                send("bestmove " + Move.toString(bookMove));
+                return;
+            }
+        }
+
+        // A clock becomes a fixed budget for this move
+        boolean white = position.getSideToMove() == Bitboards.WHITE;
+        long remaining = white ? whiteTime : blackTime;
+        if (remaining >= 0 && moveTime == Long.MAX_VALUE) {
+            long increment = white ? whiteIncrement : blackIncrement;
+            long budget = remaining / movesToGo + increment * 3 / 4;
+            moveTime = Math.max(1, Math.min(budget, remaining - MOVE_OVERHEAD_MILLIS));
+        }
+
+        // Pondering searches without a clock; the budget starts at "ponderhit"
+        SearchLimits limits = ponder || infinite ? new SearchLimits(depth, Long.MAX_VALUE) : new SearchLimits(depth, moveTime);
+        Position root = new Position(position);
+        int generation;
+        synchronized (this) {
+            holdResult = ponder || infinite;
+            ponderMoveTime = ponder ? moveTime : Long.MAX_VALUE;
+            generation = ++searchGeneration;
+        }
+        Search current = search;
+        current.prepare();
+        searchThread = new Thread(() -> runSearch(current, root, limits, generation), "uci-search");
+        searchThread.start();
+    }
+
+    private void runSearch(Search current, Position root, SearchLimits limits, int generation) {
+        SearchResult result = current.search(root, limits);
+
+        // In infinite and ponder mode the best move may only be sent once the
+        // GUI asks for it, even when the search has run out of things to do
+        synchronized (this) {
+            while (holdResult && generation == searchGeneration) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        int[] pv = result.getPrincipalVariation();
+        String bestMove = result.getBestMove() == Move.NONE ? "0000" : Move.toString(result.getBestMove());
+        send("bestmove " + bestMove + (pv.length > 1 ? " ponder " + Move.toString(pv[1]) : ""));
+    }
+
+    private void ponderhit() {
+        // The opponent played the expected move: the ponder search carries on
+        // as a normal one, now with the budget it would have had
+        long moveTime;
+        int generation;
+        synchronized (this) {
+            if (searchThread == null || !holdResult || ponderMoveTime == Long.MAX_VALUE) {
+                return;
+            }
+            holdResult = false;
+            moveTime = ponderMoveTime;
+            generation = searchGeneration;
+            notifyAll();
+        }
+        Search current = search;
+        Thread timer = new Thread(() -> {
+            try {
+                Thread.sleep(moveTime);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                if (generation == searchGeneration) {
+                    current.stop();
+                }
+            }
+        }, "uci-ponder-timer");
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    private void stopSearch() {
+        // Stop any running search and wait for its "bestmove"
+        if (searchThread == null) {
+            return;
+        }
+        synchronized (this) {
+            holdResult = false;
+            notifyAll();
+        }
+        search.stop();
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    private void ensureSearch() {
+        if (search != null) {
+            return;
+        }
+        transpositionTable = new TranspositionTable(hashMb);
+        search = new Search(transpositionTable);
+        search.setThreads(threads);
+        search.setNetwork(network);
+        search.setTablebase(tablebase);
+        search.setListener(result -> send("info " + result));
+    }
+
+    private static synchronized void send(String line) {
+        // Both the input loop and the search thread write here
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    private static String argument(String[] tokens, int index) {
+        // A value missing at the end of the line parses as a bad number
+        return index < tokens.length ? tokens[index] : "";
+    }
+
+    private static int parseInt(String text, int fallback) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static long parseLong(String text, long fallback) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}